@@ -0,0 +1,97 @@
+package shippingstore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds the outcome of <CODE>ShippingStore.importOrders()</CODE>: the
+ * number of orders that were added and, for every record that was not, the reason
+ * why.
+ *
+ */
+public class ImportResult {
+
+    private int acceptedCount;
+    private final List<Reject> rejects = new ArrayList<>();
+
+    /**
+     * This method returns the number of orders that were added to the store.
+     *
+     * @return the number of accepted records.
+     */
+    public int getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    /**
+     * This method returns the records that were not added, in the order they were
+     * given.
+     *
+     * @return a read-only list of the rejected records.
+     */
+    public List<Reject> getRejects() {
+        return Collections.unmodifiableList(rejects);
+    }
+
+    void addAccepted(int count) {
+        acceptedCount += count;
+    }
+
+    void addReject(long recordNumber, String trackingNumber, String reason) {
+        rejects.add(new Reject(recordNumber, trackingNumber, reason));
+    }
+
+    @Override
+    public String toString() {
+        return "ImportResult{" + "acceptedCount=" + acceptedCount + ", rejects=" + rejects.size() + '}';
+    }
+
+    /**
+     * A record that was not imported.
+     */
+    public static class Reject {
+
+        private final long recordNumber;
+        private final String trackingNumber;
+        private final String reason;
+
+        Reject(long recordNumber, String trackingNumber, String reason) {
+            this.recordNumber = recordNumber;
+            this.trackingNumber = trackingNumber;
+            this.reason = reason;
+        }
+
+        /**
+         * This method returns the position of the record in the input, starting at 0.
+         *
+         * @return the record number.
+         */
+        public long getRecordNumber() {
+            return recordNumber;
+        }
+
+        /**
+         * This method returns the tracking number of the record, if it had one.
+         *
+         * @return the tracking number, or null if the record was empty.
+         */
+        public String getTrackingNumber() {
+            return trackingNumber;
+        }
+
+        /**
+         * This method returns why the record was rejected.
+         *
+         * @return the reason, using the messages of <CODE>addOrder()</CODE>.
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return recordNumber + " " + trackingNumber + ": " + reason;
+        }
+    }
+}
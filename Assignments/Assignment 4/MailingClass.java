@@ -0,0 +1,56 @@
+package shippingstore;
+
+import java.util.HashMap;
+
+/**
+ * This enum represents the mailing class of a package order. Each value has the
+ * label that is used for it in the data file and on the console.
+ *
+ */
+public enum MailingClass {
+
+    FIRST_CLASS("First-Class"),
+    PRIORITY("Priority"),
+    RETAIL("Retail"),
+    GROUND("Ground"),
+    METRO("Metro");
+
+    private static final HashMap<String, MailingClass> BY_LABEL = new HashMap<>();
+
+    static {
+        for (MailingClass value : values()) {
+            BY_LABEL.put(value.label, value);
+        }
+    }
+
+    private final String label;
+
+    MailingClass(String label) {
+        this.label = label;
+    }
+
+    /**
+     * This method returns the label of the mailing class.
+     *
+     * @return a <b><CODE>String</CODE></b> that is the label, such as "First-Class".
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * This method returns the mailing class with the given label. Labels are case
+     * sensitive.
+     *
+     * @param label the label to look up.
+     * @return the <CODE>MailingClass</CODE> with that label, or null if there is none.
+     */
+    public static MailingClass fromLabel(String label) {
+        return BY_LABEL.get(label);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -1,7 +1,6 @@
 package shippingstore;
 
-import java.io.FileReader;
-import java.io.PrintWriter;
+import java.io.File;
 import java.util.Scanner;
 
 /**
@@ -25,8 +24,9 @@ public class MainApp {
 
         // Read database from file.
         ShippingStore shippingstore = new ShippingStore();
-        FileReader dataReader = new FileReader(shippingstore.getDataFile());
-        shippingstore.read(dataReader);
+        shippingstore.readParallel(shippingstore.getDataFile());
+        // Apply the changes logged since the data file was last written
+        shippingstore.openLog(new File("PackageOrderDB.log"));
 
         
         // Console user intererface
@@ -107,9 +107,8 @@ public class MainApp {
         in.close();
         
         // Before exiting the program, save the data from the main memory to the
-        // data file.
-        PrintWriter pw = new PrintWriter("PackageOrderDB.txt");
-        shippingstore.flush(pw);
+        // data file and empty the change log.
+        shippingstore.closeLog();
         
         System.out.println("Done!");
 
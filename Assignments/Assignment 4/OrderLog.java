@@ -0,0 +1,295 @@
+package shippingstore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is an append-only log of the changes made to a
+ * <CODE>ShippingStore</CODE>, so that a change is safe on disk as soon as it is
+ * made instead of when the whole database is next written. Each change is one
+ * line of text: "<CODE>A</CODE>" followed by the order's text form for an added
+ * order, or "<CODE>R</CODE>" followed by a tracking number for a removed one.
+ * <p>
+ * Changes are committed in groups. A thread that commits a change waits until
+ * the change has been forced to disk. The first waiting thread writes every
+ * change appended so far and forces the file once for all of them, while the
+ * others wait for it, so concurrent writers share one <CODE>fsync</CODE>.
+ * If the group cannot be written, the file is cut back to the end of the last
+ * committed group and every change in the group fails, so a change its caller
+ * was told had failed is never replayed.
+ * <p>
+ * A change whose line was cut short by a crash was never committed, so it is
+ * dropped when the log is opened again.
+ *
+ */
+class OrderLog implements Closeable {
+
+    /**
+     * The first character of the line for an added order.
+     */
+    static final char ADD = 'A';
+
+    /**
+     * The first character of the line for a removed order.
+     */
+    static final char REMOVE = 'R';
+
+    private final FileChannel channel;
+    private final Object lock = new Object();
+
+    // All guarded by lock
+    private Batch pending = new Batch();
+    private boolean syncing;
+    private long recordCount;
+    // The end of the last committed group, and whether the file may hold bytes
+    // after it that could not be cut off
+    private long committedSize;
+    private boolean damaged;
+
+    /**
+     * A group of changes that are written and forced together.
+     */
+    private static final class Batch {
+        final StringBuilder lines = new StringBuilder();
+        int records;
+        boolean done;
+        IOException failure;
+    }
+
+    /**
+     * Opens a log, creating the file if it does not exist. An incomplete last
+     * line is cut off.
+     *
+     * @param file the log file.
+     * @throws IOException if the file cannot be opened.
+     */
+    OrderLog(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long end = channel.size();
+        ByteBuffer last = ByteBuffer.allocate(1);
+        while (end > 0) {
+            last.clear();
+            channel.read(last, end - 1);
+            if (last.get(0) == '\n') {
+                break;
+            }
+            end--;
+        }
+        if (end < channel.size()) {
+            channel.truncate(end);
+            channel.force(false);
+        }
+        channel.position(end);
+        committedSize = end;
+    }
+
+    /**
+     * Reads the changes that are in the log file, oldest first. This should be
+     * called right after the log is opened, before anything is appended.
+     *
+     * @return the lines of the changes.
+     * @throws IOException if the file cannot be read.
+     */
+    List<String> readRecords() throws IOException {
+        synchronized (lock) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+                // keep reading until the buffer is full
+            }
+            String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+            List<String> records = new ArrayList<>();
+            int start = 0;
+            for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', start)) {
+                if (i > start) {
+                    records.add(text.substring(start, i));
+                }
+                start = i + 1;
+            }
+            recordCount = records.size();
+            return records;
+        }
+    }
+
+    /**
+     * Logs a number of added orders and waits until they are all on disk, with
+     * one write and one <CODE>fsync</CODE> for the whole group.
+     *
+     * @param orders the orders that are added.
+     * @throws IOException if the log cannot be written.
+     */
+    void logAddAll(List<PackageOrder> orders) throws IOException {
+        if (orders.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder(64 * orders.size());
+        for (PackageOrder order : orders) {
+            lines.append(ADD).append(' ');
+            ShippingStore.appendOrder(lines, order);
+        }
+        commit(append(lines, orders.size()));
+    }
+
+    /**
+     * Logs a removed order and waits until it is on disk.
+     *
+     * @param trackingNumber the tracking number of the order that is removed.
+     * @throws IOException if the log cannot be written.
+     */
+    void logRemove(String trackingNumber) throws IOException {
+        commit(append(new StringBuilder(16).append(REMOVE).append(' ')
+                .append(trackingNumber).append('\n'), 1));
+    }
+
+    /**
+     * Returns the number of changes in the log file, including those not yet on
+     * disk.
+     *
+     * @return the number of changes.
+     */
+    long getRecordCount() {
+        synchronized (lock) {
+            return recordCount;
+        }
+    }
+
+    /**
+     * Adds lines to the changes waiting to be written.
+     *
+     * @param lines the lines, each ending with a newline.
+     * @param records the number of lines.
+     * @return the group the changes are written in.
+     */
+    private Batch append(CharSequence lines, int records) {
+        synchronized (lock) {
+            pending.lines.append(lines);
+            pending.records += records;
+            recordCount += records;
+            return pending;
+        }
+    }
+
+    /**
+     * Waits until a group of changes is on disk, writing and forcing it if no
+     * other thread is doing so.
+     *
+     * @param batch the group of the changes.
+     * @throws IOException if the group cannot be written.
+     */
+    private void commit(Batch batch) throws IOException {
+        synchronized (lock) {
+            while (!batch.done && syncing) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while committing to the order log");
+                }
+            }
+            if (batch.done) {
+                if (batch.failure != null) {
+                    throw new IOException("Order log could not be written", batch.failure);
+                }
+                return;
+            }
+            // Only the pending group can be neither done nor being written
+            syncing = true;
+            pending = new Batch();
+        }
+
+        IOException failure = new IOException("Order log could not be written");
+        try {
+            if (damaged) {
+                throw new IOException("Order log holds a change that could not be cut off");
+            }
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(batch.lines.toString());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+            committedSize = channel.position();
+            failure = null;
+        } catch (IOException e) {
+            failure = e;
+            rollBack(e);
+            throw e;
+        } finally {
+            synchronized (lock) {
+                syncing = false;
+                batch.done = true;
+                if (failure != null) {
+                    batch.failure = failure;
+                    recordCount -= batch.records;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Cuts the file back to the end of the last committed group after a group
+     * could not be written, so that the group is not replayed and later groups
+     * follow the committed ones. If that fails too, later groups fail until it
+     * succeeds.
+     *
+     * @param failure the exception the write failed with.
+     */
+    private void rollBack(IOException failure) {
+        try {
+            channel.truncate(committedSize);
+            channel.position(committedSize);
+            channel.force(false);
+            damaged = false;
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+            damaged = true;
+        }
+    }
+
+    /**
+     * Empties the log, once its changes have been saved in the database file.
+     * No changes may be appended while this runs.
+     *
+     * @throws IOException if the file cannot be truncated.
+     */
+    void truncate() throws IOException {
+        synchronized (lock) {
+            while (syncing) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while truncating the order log");
+                }
+            }
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(false);
+            committedSize = 0;
+            damaged = false;
+            // The pending changes are in the database file, so they are done
+            pending.done = true;
+            pending = new Batch();
+            recordCount = 0;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Closes the log file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -5,21 +5,24 @@ package shippingstore;
  * methods and no setter methods and as a result a package order cannot be mutated once
  * initialized. A package order object can also call the two override methods
  * <CODE>toString()</CODE> and <CODE>equals()</CODE>
+ * <p>
+ * The type, specification and mailing class are kept as enums, so an order
+ * refers to shared constants instead of holding strings of its own.
  *
  */
 public class PackageOrder {
 
     private final String trackingnumber;
-    private final String type;
-    private final String specification;
-    private final String mailingclass;
+    private final PackageType type;
+    private final Specification specification;
+    private final MailingClass mailingclass;
     private final float weight;
     private final int volume;
 
     /**
-     * This constructor initializes the package order object. The constructor provides no
-     * user input validation. That should be handled by the class that creates a
-     * package order object.
+     * This constructor initializes the package order object. Apart from the labels, the
+     * constructor provides no user input validation. That should be handled by the class
+     * that creates a package order object.
      *
      * @param trackingnumber a <b><CODE>String</CODE></b> that represents the tracking number
      *
@@ -37,8 +40,54 @@ public class PackageOrder {
      * @param volume an <b><CODE>int</CODE></b> that represents the volume of the package in
      * cubic inches, calculated as Width x Length x Height
      *
+     * A null type, specification or mailing class is stored as null.
+     *
+     * @throws IllegalArgumentException if a type, specification or mailing class is not
+     * one of the values listed above, since the order could not keep it.
      */
     public PackageOrder(String trackingnumber, String type, String specification, String mailingclass, float weight, int volume) {
+        this(trackingnumber, typeOf(type), specificationOf(specification),
+                mailingClassOf(mailingclass), weight, volume);
+    }
+
+    private static PackageType typeOf(String label) {
+        PackageType type = PackageType.fromLabel(label);
+        if (type == null && label != null) {
+            throw new IllegalArgumentException("Unknown type: " + label);
+        }
+        return type;
+    }
+
+    private static Specification specificationOf(String label) {
+        Specification specification = Specification.fromLabel(label);
+        if (specification == null && label != null) {
+            throw new IllegalArgumentException("Unknown specification: " + label);
+        }
+        return specification;
+    }
+
+    private static MailingClass mailingClassOf(String label) {
+        MailingClass mailingClass = MailingClass.fromLabel(label);
+        if (mailingClass == null && label != null) {
+            throw new IllegalArgumentException("Unknown mailing class: " + label);
+        }
+        return mailingClass;
+    }
+
+    /**
+     * This constructor initializes the package order object from enum values. Like the
+     * other constructor, it provides no user input validation; see
+     * <CODE>PackageOrderBuilder</CODE>.
+     *
+     * @param trackingnumber a <b><CODE>String</CODE></b> that represents the tracking number
+     * @param type the type of the package.
+     * @param specification the specification of the package.
+     * @param mailingclass the mailing class of the package.
+     * @param weight a <b><CODE>float</CODE></b> that represents the weight of the package in oz
+     * @param volume an <b><CODE>int</CODE></b> that represents the volume of the package in
+     * cubic inches
+     */
+    public PackageOrder(String trackingnumber, PackageType type, Specification specification, MailingClass mailingclass, float weight, int volume) {
         this.trackingnumber = trackingnumber;
         this.type = type;
         this.specification = specification;
@@ -62,6 +111,15 @@ public class PackageOrder {
      * @return a <b><CODE>String</CODE></b> that is the package order's type.
      */
     public String getType() {
+        return type == null ? null : type.getLabel();
+    }
+
+    /**
+     * This method returns the package order's type as an enum.
+     *
+     * @return the <CODE>PackageType</CODE> of the package order.
+     */
+    public PackageType getPackageType() {
         return type;
     }
 
@@ -71,6 +129,15 @@ public class PackageOrder {
      * @return a <b><CODE>String</CODE></b> that is the package order's specification.
      */
     public String getSpecification() {
+        return specification == null ? null : specification.getLabel();
+    }
+
+    /**
+     * This method returns the package order's specification as an enum.
+     *
+     * @return the <CODE>Specification</CODE> of the package order.
+     */
+    public Specification getPackageSpecification() {
         return specification;
     }
 
@@ -80,6 +147,15 @@ public class PackageOrder {
      * @return a <b><CODE>string</CODE></b> that is the package order's mailing class
      */
     public String getMailingClass() {
+        return mailingclass == null ? null : mailingclass.getLabel();
+    }
+
+    /**
+     * This method returns the package order's mailing class as an enum.
+     *
+     * @return the <CODE>MailingClass</CODE> of the package order.
+     */
+    public MailingClass getPackageMailingClass() {
         return mailingclass;
     }
 
@@ -0,0 +1,233 @@
+package shippingstore;
+
+/**
+ * This class checks the fields of a package order, given as the strings a user or
+ * a data feed provides, and builds a <CODE>PackageOrder</CODE> from them. The checks
+ * are the rules of <CODE>ShippingStore.addOrder()</CODE>, apart from the check for
+ * an existing order with the same tracking number, which needs the store:
+ * <p>
+ * 1. The tracking number is 5 alphanumeric characters.
+ * <p>
+ * 2. The type, specification and mailing class are among the values of
+ * <CODE>PackageType</CODE>, <CODE>Specification</CODE> and <CODE>MailingClass</CODE>.
+ * <p>
+ * 3. The weight is a non-negative number.
+ * <p>
+ * 4. The volume is an integer number between 0 and 999999.
+ * <p>
+ * Every field is looked up or parsed once, by <CODE>validate()</CODE>, without
+ * regular expressions. The result is kept until a field is set again, so
+ * <CODE>build()</CODE> after <CODE>validate()</CODE> does not check the fields again.
+ *
+ */
+public class PackageOrderBuilder {
+
+    private String trackingNumber;
+    private String type;
+    private String specification;
+    private String mailingClass;
+    private String weight;
+    private String volume;
+
+    private PackageType packageType;
+    private Specification packageSpecification;
+    private MailingClass packageMailingClass;
+    private float weightValue;
+    private int volumeValue;
+
+    // Whether the fields have been checked since one was last set, and the result
+    private boolean checked;
+    private String error;
+
+    /**
+     * This method sets the tracking number.
+     *
+     * @param trackingNumber the tracking number.
+     * @return this builder.
+     */
+    public PackageOrderBuilder setTrackingNumber(String trackingNumber) {
+        this.trackingNumber = trackingNumber;
+        checked = false;
+        return this;
+    }
+
+    /**
+     * This method sets the type label, such as "Box".
+     *
+     * @param type the type label.
+     * @return this builder.
+     */
+    public PackageOrderBuilder setType(String type) {
+        this.type = type;
+        checked = false;
+        return this;
+    }
+
+    /**
+     * This method sets the specification label, such as "Fragile".
+     *
+     * @param specification the specification label.
+     * @return this builder.
+     */
+    public PackageOrderBuilder setSpecification(String specification) {
+        this.specification = specification;
+        checked = false;
+        return this;
+    }
+
+    /**
+     * This method sets the mailing class label, such as "Priority".
+     *
+     * @param mailingClass the mailing class label.
+     * @return this builder.
+     */
+    public PackageOrderBuilder setMailingClass(String mailingClass) {
+        this.mailingClass = mailingClass;
+        checked = false;
+        return this;
+    }
+
+    /**
+     * This method sets the weight, as text.
+     *
+     * @param weight the weight in oz.
+     * @return this builder.
+     */
+    public PackageOrderBuilder setWeight(String weight) {
+        this.weight = weight;
+        checked = false;
+        return this;
+    }
+
+    /**
+     * This method sets the volume, as text.
+     *
+     * @param volume the volume in cubic inches.
+     * @return this builder.
+     */
+    public PackageOrderBuilder setVolume(String volume) {
+        this.volume = volume;
+        checked = false;
+        return this;
+    }
+
+    /**
+     * This method checks the fields in the order listed above and stops at the first
+     * one that is not valid.
+     *
+     * @return null if all fields are valid, or else a message that explains what is
+     * wrong.
+     */
+    public String validate() {
+        if (!checked) {
+            error = check();
+            checked = true;
+        }
+        return error;
+    }
+
+    /**
+     * Checks the fields, keeping the values they are parsed to.
+     *
+     * @return null if all fields are valid, or else the message of <CODE>validate()</CODE>.
+     */
+    private String check() {
+        if (!isValidTrackingNumber(trackingNumber)) {
+            return "Invalid Tracking Number: not proper format."
+                + "Tracking Number must be at least 5 alphanumeric characters.";
+        }
+
+        packageType = type == null ? null : PackageType.fromLabel(type);
+        if (packageType == null) {
+            return "Invalid type:\n"
+                + "Type must be one of following: "
+                + "Postcard, Letter, Envelope, Packet, Box, Crate, Drum, Roll, Tube.";
+        }
+
+        packageSpecification = specification == null ? null : Specification.fromLabel(specification);
+        if (packageSpecification == null) {
+            return "Invalid specification:\n"
+                + "Specification must be one of following: "
+                + "Fragile, Books, Catalogs, Do-not-Bend, N/A.";
+        }
+
+        packageMailingClass = mailingClass == null ? null : MailingClass.fromLabel(mailingClass);
+        if (packageMailingClass == null) {
+            return "Invalid Mailing Class:\n"
+                + "Mailing Class must be one of following: "
+                + "First-Class, Priority, Retail, Ground, Metro.";
+        }
+
+        try {
+            weightValue = Float.parseFloat(weight);
+        } catch (NullPointerException | NumberFormatException e) {
+            return "Invalid weight:\n"
+                + "The package's weight has to be a number.";
+        }
+        if (weightValue < 0) {
+            return "The weight of package cannot be negative.";
+        }
+
+        volumeValue = parseVolume(volume);
+        if (volumeValue < 0) {
+            return "Invalid volume:\n"
+                + "The package's volume has to be an integer number between 0 and 999999. ";
+        }
+        return null;
+    }
+
+    /**
+     * This method checks the fields, unless <CODE>validate()</CODE> has already checked
+     * them, and builds the package order.
+     *
+     * @return the new <CODE>PackageOrder</CODE>.
+     * @throws IllegalArgumentException if a field is not valid, with the message of
+     * <CODE>validate()</CODE>.
+     */
+    public PackageOrder build() {
+        if (validate() != null) {
+            throw new IllegalArgumentException(error);
+        }
+        return new PackageOrder(trackingNumber, packageType, packageSpecification,
+                packageMailingClass, weightValue, volumeValue);
+    }
+
+    /**
+     * This method checks that a tracking number is exactly 5 ASCII letters or digits.
+     *
+     * @param trackingNumber the tracking number to check.
+     * @return true if the tracking number is valid.
+     */
+    public static boolean isValidTrackingNumber(String trackingNumber) {
+        if (trackingNumber == null || trackingNumber.length() != 5) {
+            return false;
+        }
+        for (int i = 0; i < 5; i++) {
+            char c = trackingNumber.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a volume of 1 to 6 ASCII digits.
+     *
+     * @return the volume, or -1 if the text is not a valid volume.
+     */
+    private static int parseVolume(String volume) {
+        if (volume == null || volume.isEmpty() || volume.length() > 6) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < volume.length(); i++) {
+            char c = volume.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,326 @@
+package shippingstore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * This class is a binary database file of package orders with one fixed-width
+ * record per order, read and written through a <CODE>MappedByteBuffer</CODE>. The
+ * file starts with a 16 byte header:
+ * <p>
+ * <CODE>int</CODE> magic number "PODB", <CODE>short</CODE> version,
+ * <CODE>short</CODE> record size, <CODE>int</CODE> number of records and
+ * <CODE>int</CODE> reserved.
+ * <p>
+ * Each record takes 20 bytes: the tracking number packed as by
+ * <CODE>PackageOrderTable.pack()</CODE> in a <CODE>long</CODE>, the volume as an
+ * <CODE>int</CODE>, the weight as a <CODE>float</CODE>, the ordinals of the type,
+ * specification and mailing class as bytes (-1 for none) and a padding byte. All
+ * values are big-endian. Tracking numbers longer than 8 characters or not in
+ * ASCII cannot be stored.
+ * <p>
+ * Opening the file reads only the header, and a record is read when it is asked
+ * for. <CODE>ShippingStore.openBinary()</CODE> still reads every record once, with
+ * <CODE>addTo()</CODE>, to load the orders into its table, and then uses the file
+ * only to add, replace or remove single records in place. The file may be longer
+ * than its records, so that adding a record does not have to extend the file each
+ * time. When a record is added or removed, the record is forced to disk before the
+ * count in the header is changed, and the header is forced after it, so a crash
+ * cannot leave the count covering a record that was never written. A crash during
+ * a removal can at worst leave the moved record in the file twice, and the copy
+ * after the count is skipped as a duplicate when the file is loaded.
+ *
+ */
+class PackageOrderFile extends AbstractList<PackageOrder> implements RandomAccess, Closeable {
+
+    /**
+     * The first four bytes of the file, "PODB".
+     */
+    static final int MAGIC = 0x504F4442;
+
+    /**
+     * The version of the format.
+     */
+    static final short VERSION = 1;
+
+    /**
+     * The size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * The size of a record in bytes.
+     */
+    static final int RECORD_SIZE = 20;
+
+    private static final int COUNT_OFFSET = 8;
+    private static final int MIN_CAPACITY = 1024;
+
+    /**
+     * The most records a file can hold, so that it can be mapped as one buffer.
+     */
+    private static final int MAX_RECORDS = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    private final File file;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int size;
+    private int capacity;
+
+    private PackageOrderFile(File file, FileChannel channel, int size, int capacity) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.size = size;
+        this.capacity = capacity;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+    }
+
+    /**
+     * Opens an existing file, checking only its header.
+     *
+     * @param file the file to open.
+     * @return the opened file.
+     * @throws IOException if the file cannot be opened or is not in this format.
+     */
+    static PackageOrderFile open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > HEADER_SIZE + (long) MAX_RECORDS * RECORD_SIZE) {
+                throw new IOException("Not a package order file: " + file);
+            }
+            PackageOrderFile orders = new PackageOrderFile(file, channel, 0,
+                    (int) ((length - HEADER_SIZE) / RECORD_SIZE));
+            MappedByteBuffer header = orders.buffer;
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a package order file: " + file);
+            }
+            if (header.getShort(4) != VERSION || header.getShort(6) != RECORD_SIZE) {
+                throw new IOException("Unsupported package order file version " + header.getShort(4)
+                        + ": " + file);
+            }
+            int count = header.getInt(COUNT_OFFSET);
+            if (count < 0 || count > orders.capacity) {
+                throw new IOException("Package order file is cut short: " + file);
+            }
+            orders.size = count;
+            return orders;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a file holding the given orders, replacing any file of that name,
+     * and forces it to disk.
+     *
+     * @param file the file to create.
+     * @param orders the orders to write.
+     * @return the created file, open for changes.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalArgumentException if a tracking number cannot be stored.
+     */
+    static PackageOrderFile create(File file, List<PackageOrder> orders) throws IOException {
+        if (orders.size() > MAX_RECORDS) {
+            throw new IOException("Too many orders for a package order file: " + orders.size());
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            PackageOrderFile created = new PackageOrderFile(file, channel, 0,
+                    Math.max(orders.size(), MIN_CAPACITY));
+            created.buffer.putInt(0, MAGIC);
+            created.buffer.putShort(4, VERSION);
+            created.buffer.putShort(6, (short) RECORD_SIZE);
+            for (int i = 0; i < orders.size(); i++) {
+                created.write(i, orders.get(i));
+            }
+            created.size = orders.size();
+            created.buffer.putInt(COUNT_OFFSET, created.size);
+            created.force();
+            return created;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the order of a record.
+     *
+     * @param index the record number.
+     * @return a new <CODE>PackageOrder</CODE> with the values of the record.
+     */
+    @Override
+    public PackageOrder get(int index) {
+        checkIndex(index);
+        int at = offset(index);
+        return new PackageOrder(PackageOrderTable.unpack(buffer.getLong(at)),
+                decode(PackageOrderTable.TYPES, buffer.get(at + 16)),
+                decode(PackageOrderTable.SPECIFICATIONS, buffer.get(at + 17)),
+                decode(PackageOrderTable.MAILING_CLASSES, buffer.get(at + 18)),
+                buffer.getFloat(at + 12), buffer.getInt(at + 8));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Replaces the order of a record in place.
+     *
+     * @param index the record number.
+     * @param order the new order.
+     * @return the order the record held before.
+     * @throws IllegalArgumentException if the tracking number cannot be stored.
+     */
+    @Override
+    public PackageOrder set(int index, PackageOrder order) {
+        PackageOrder old = get(index);
+        write(index, order);
+        return old;
+    }
+
+    /**
+     * Adds a record at the end, making the file longer if it is full.
+     *
+     * @param order the order to add.
+     * @throws IOException if the file cannot be made longer.
+     * @throws IllegalArgumentException if the tracking number cannot be stored.
+     */
+    void append(PackageOrder order) throws IOException {
+        if (size == capacity) {
+            if (capacity == MAX_RECORDS) {
+                throw new IOException("Package order file is full: " + file);
+            }
+            capacity = Math.min(MAX_RECORDS, Math.max(MIN_CAPACITY, capacity + (capacity >> 1)));
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        }
+        write(size, order);
+        buffer.force(offset(size), RECORD_SIZE);
+        buffer.putInt(COUNT_OFFSET, size + 1);
+        buffer.force(COUNT_OFFSET, 4);
+        size++;
+    }
+
+    /**
+     * Removes a record, moving the last record into its place, as
+     * <CODE>PackageOrderTable.removeAt()</CODE> does with its rows. The moved
+     * record is forced to disk before the count is changed.
+     *
+     * @param index the record number.
+     */
+    void removeAt(int index) {
+        checkIndex(index);
+        int last = size - 1;
+        if (index < last) {
+            for (int i = 0; i < RECORD_SIZE; i += 4) {
+                buffer.putInt(offset(index) + i, buffer.getInt(offset(last) + i));
+            }
+            buffer.force(offset(index), RECORD_SIZE);
+        }
+        buffer.putInt(COUNT_OFFSET, last);
+        buffer.force(COUNT_OFFSET, 4);
+        size = last;
+    }
+
+    /**
+     * Adds the records to a table, skipping those whose tracking number the table
+     * already holds, without building <CODE>PackageOrder</CODE> objects.
+     *
+     * @param table the table to add to.
+     * @return the number of records added.
+     * @throws IOException if a record is not valid.
+     */
+    int addTo(PackageOrderTable table) throws IOException {
+        int added = 0;
+        for (int i = 0; i < size; i++) {
+            int at = offset(i);
+            long trackingNumber = buffer.getLong(at);
+            byte type = buffer.get(at + 16);
+            byte specification = buffer.get(at + 17);
+            byte mailingClass = buffer.get(at + 18);
+            if (!isPacked(trackingNumber)
+                    || type < -1 || type >= PackageOrderTable.TYPES.length
+                    || specification < -1 || specification >= PackageOrderTable.SPECIFICATIONS.length
+                    || mailingClass < -1 || mailingClass >= PackageOrderTable.MAILING_CLASSES.length) {
+                throw new IOException("Invalid record " + i + " in " + file);
+            }
+            if (table.addIfAbsent(trackingNumber, type, specification, mailingClass,
+                    buffer.getFloat(at + 12), buffer.getInt(at + 8))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Forces the changes made so far to disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Forces the changes to disk and closes the file. The mapping itself is
+     * released when the buffer is garbage collected.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void write(int index, PackageOrder order) {
+        long trackingNumber = PackageOrderTable.pack(order.getTrackingNumber());
+        if (trackingNumber == PackageOrderTable.UNPACKED) {
+            throw new IllegalArgumentException("Tracking number cannot be stored in a package order file: "
+                    + order.getTrackingNumber());
+        }
+        int at = offset(index);
+        buffer.putLong(at, trackingNumber);
+        buffer.putInt(at + 8, order.getVolume());
+        buffer.putFloat(at + 12, order.getWeight());
+        buffer.put(at + 16, PackageOrderTable.ordinal(order.getPackageType()));
+        buffer.put(at + 17, PackageOrderTable.ordinal(order.getPackageSpecification()));
+        buffer.put(at + 18, PackageOrderTable.ordinal(order.getPackageMailingClass()));
+        buffer.put(at + 19, (byte) 0);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private static int offset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private static <E> E decode(E[] values, byte ordinal) {
+        return ordinal < 0 ? null : values[ordinal];
+    }
+
+    /**
+     * Checks that a <CODE>long</CODE> is a tracking number packed by
+     * <CODE>PackageOrderTable.pack()</CODE>: a length of at most 8 and no bits
+     * set past the last character.
+     */
+    private static boolean isPacked(long code) {
+        long length = code >>> 56;
+        return length <= 8 && (code & ((1L << 56) - 1) & -(1L << (7 * length))) == 0;
+    }
+}
@@ -0,0 +1,427 @@
+package shippingstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * This class reads package orders in the text form written by
+ * <CODE>ShippingStore.flush()</CODE>: one order per line, with the six fields
+ * separated by single spaces. Unlike a <CODE>Scanner</CODE> with
+ * <CODE>split()</CODE>, it works on the raw bytes of the file. Lines and fields
+ * are found by scanning for space and newline bytes, and numbers are parsed
+ * in place without creating substrings.
+ * <p>
+ * The type, specification and mailing class fields take only a few values, so
+ * a parser keeps one <CODE>String</CODE> for each value it has seen and shares
+ * it between all the orders it creates. A parser is not thread safe, but
+ * <CODE>parseParallel()</CODE> runs one parser per chunk of a file on a pool of
+ * threads.
+ *
+ */
+class PackageOrderParser {
+
+    /**
+     * Files at least this large are memory-mapped instead of read into the heap.
+     */
+    static final long MAP_THRESHOLD = 1 << 20;
+
+    /**
+     * The largest part of a file that is mapped at once.
+     */
+    static final int MAX_WINDOW = 1 << 30;
+
+    /**
+     * The most distinct values that are shared. Further values get their own
+     * strings, so a file with bad data cannot fill the table.
+     */
+    private static final int MAX_VOCABULARY = 64;
+
+    /**
+     * Powers of ten that are exact as both <CODE>float</CODE> and <CODE>double</CODE>.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10
+    };
+
+    private static final int FIELDS = 6;
+
+    private final byte[][] vocabularyBytes = new byte[MAX_VOCABULARY * 2][];
+    private final String[] vocabulary = new String[MAX_VOCABULARY * 2];
+    private int vocabularySize;
+
+    private final int[] fieldBounds = new int[FIELDS * 2];
+    private byte[] scratch = new byte[32];
+
+    /**
+     * Reads all the package orders of a file and passes them to a consumer in
+     * file order. Small files are read into a heap buffer; larger ones are mapped,
+     * a window of up to <CODE>MAX_WINDOW</CODE> bytes at a time.
+     *
+     * @param file the file to read.
+     * @param orders the consumer of the orders.
+     * @throws IOException if the file cannot be read or a line is not a valid order.
+     */
+    void parse(File file, Consumer<? super PackageOrder> orders) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAP_THRESHOLD) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // keep reading until the buffer is full
+                }
+                parse(buffer, 0, buffer.position(), orders);
+                return;
+            }
+            long position = 0;
+            while (position < size) {
+                ByteBuffer buffer = map(channel, position, Math.min(size - position, MAX_WINDOW));
+                int end = buffer.limit();
+                if (position + end < size) {
+                    // Stop at the last whole line; the rest starts the next window
+                    end = lastLineEnd(buffer, end);
+                    if (end == 0) {
+                        throw new IOException("Line longer than " + MAX_WINDOW + " bytes in " + file);
+                    }
+                }
+                parse(buffer, 0, end, orders);
+                position += end;
+            }
+        }
+    }
+
+    /**
+     * Reads all the package orders of a file on a pool of threads and passes them
+     * to a consumer in file order, on the calling thread. Each mapped window of the
+     * file is cut into one chunk per thread, at line boundaries. The chunks are
+     * parsed at the same time into lists of their own, which are then passed to
+     * the consumer one after another. Files smaller than <CODE>MAP_THRESHOLD</CODE>
+     * are read by a single parser.
+     *
+     * @param file the file to read.
+     * @param pool the pool that parses the chunks.
+     * @param orders the consumer of the orders.
+     * @throws IOException if the file cannot be read or a line is not a valid order.
+     */
+    static void parseParallel(File file, ForkJoinPool pool, Consumer<? super PackageOrder> orders)
+            throws IOException {
+        int chunks = pool.getParallelism();
+        if (chunks < 2 || file.length() < MAP_THRESHOLD) {
+            new PackageOrderParser().parse(file, orders);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                ByteBuffer buffer = map(channel, position, Math.min(size - position, MAX_WINDOW));
+                int end = buffer.limit();
+                if (position + end < size) {
+                    end = lastLineEnd(buffer, end);
+                    if (end == 0) {
+                        throw new IOException("Line longer than " + MAX_WINDOW + " bytes in " + file);
+                    }
+                }
+
+                List<Callable<List<PackageOrder>>> tasks = new ArrayList<>(chunks);
+                int chunkStart = 0;
+                for (int c = 1; c <= chunks; c++) {
+                    int chunkEnd = c == chunks ? end : nextLineStart(buffer,
+                            Math.max(chunkStart, (int) ((long) end * c / chunks)), end);
+                    final int from = chunkStart;
+                    final int to = chunkEnd;
+                    tasks.add(() -> {
+                        List<PackageOrder> chunk = new ArrayList<>();
+                        new PackageOrderParser().parse(buffer, from, to, chunk::add);
+                        return chunk;
+                    });
+                    chunkStart = chunkEnd;
+                }
+
+                for (Future<List<PackageOrder>> result : pool.invokeAll(tasks)) {
+                    for (PackageOrder order : get(result)) {
+                        orders.accept(order);
+                    }
+                }
+                position += end;
+            }
+        }
+    }
+
+    /**
+     * Waits for the orders of a chunk, passing on the exception of a chunk that
+     * could not be parsed.
+     */
+    private static List<PackageOrder> get(Future<List<PackageOrder>> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading package orders", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns the index of the first line that starts at or after
+     * <CODE>from</CODE>, or <CODE>end</CODE> if there is none.
+     *
+     * @param buffer the buffer to search.
+     * @param from the index to search from.
+     * @param end the index to stop at.
+     * @return the index of the first byte of the line.
+     */
+    static int nextLineStart(ByteBuffer buffer, int from, int end) {
+        if (from == 0) {
+            return 0;
+        }
+        for (int i = from - 1; i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Maps part of a file as a read-only buffer.
+     *
+     * @param channel the channel of the file.
+     * @param position the offset in the file of the first byte to map.
+     * @param length the number of bytes to map, at most <CODE>MAX_WINDOW</CODE>.
+     * @return the mapped buffer.
+     * @throws IOException if the file cannot be mapped.
+     */
+    static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    /**
+     * Returns the index just past the last newline before <CODE>end</CODE>, or 0
+     * if there is none.
+     *
+     * @param buffer the buffer to search.
+     * @param end the index to search back from.
+     * @return the index of the first byte after the newline.
+     */
+    static int lastLineEnd(ByteBuffer buffer, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Reads the package orders in a range of a buffer and passes them to a
+     * consumer. The range must start at the beginning of a line. Blank lines are
+     * skipped and a line may end with either "\n" or "\r\n".
+     *
+     * @param buffer the buffer holding the text.
+     * @param from the index of the first byte to read.
+     * @param to the index after the last byte to read.
+     * @param orders the consumer of the orders.
+     * @throws IOException if a line is not a valid order.
+     */
+    void parse(ByteBuffer buffer, int from, int to, Consumer<? super PackageOrder> orders) throws IOException {
+        int position = from;
+        while (position < to) {
+            int lineEnd = position;
+            while (lineEnd < to && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int end = lineEnd;
+            if (end > position && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end > position) {
+                orders.accept(parseLine(buffer, position, end));
+            }
+            position = lineEnd + 1;
+        }
+    }
+
+    /**
+     * Creates a package order from one line of text. Fields after the sixth are
+     * ignored.
+     *
+     * @param buffer the buffer holding the line.
+     * @param from the index of the first byte of the line.
+     * @param to the index after the last byte of the line.
+     * @return the package order.
+     * @throws IOException if the line does not have six fields, a number is not valid or a label is not known.
+     */
+    private PackageOrder parseLine(ByteBuffer buffer, int from, int to) throws IOException {
+        int[] bounds = fieldBounds;
+        int fields = 0;
+        int start = from;
+        for (int i = from; i <= to && fields < FIELDS; i++) {
+            if (i == to || buffer.get(i) == ' ') {
+                bounds[2 * fields] = start;
+                bounds[2 * fields + 1] = i;
+                fields++;
+                start = i + 1;
+            }
+        }
+        if (fields < FIELDS) {
+            throw new IOException("Not a valid package order: " + string(buffer, from, to));
+        }
+        try {
+            return new PackageOrder(
+                    string(buffer, bounds[0], bounds[1]),
+                    intern(buffer, bounds[2], bounds[3]),
+                    intern(buffer, bounds[4], bounds[5]),
+                    intern(buffer, bounds[6], bounds[7]),
+                    parseFloat(buffer, bounds[8], bounds[9]),
+                    parseInt(buffer, bounds[10], bounds[11]));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Not a valid package order: " + string(buffer, from, to), e);
+        }
+    }
+
+    /**
+     * Returns the shared <CODE>String</CODE> for a field value, creating it the
+     * first time the value is seen.
+     */
+    private String intern(ByteBuffer buffer, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        int mask = vocabulary.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (vocabulary[slot] != null) {
+            if (bytesEqual(vocabularyBytes[slot], buffer, from, to)) {
+                return vocabulary[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        String value = string(buffer, from, to);
+        if (vocabularySize < MAX_VOCABULARY) {
+            byte[] bytes = new byte[to - from];
+            for (int i = from; i < to; i++) {
+                bytes[i - from] = buffer.get(i);
+            }
+            vocabularyBytes[slot] = bytes;
+            vocabulary[slot] = value;
+            vocabularySize++;
+        }
+        return value;
+    }
+
+    private static boolean bytesEqual(byte[] bytes, ByteBuffer buffer, int from, int to) {
+        if (bytes.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != buffer.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a range of a buffer as a UTF-8 <CODE>String</CODE>.
+     */
+    private String string(ByteBuffer buffer, int from, int to) {
+        int length = to - from;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + from, length, StandardCharsets.UTF_8);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(from + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a decimal number such as "12.50" directly from the buffer. If the
+     * digits fit in a <CODE>float</CODE> mantissa (less than 2^24) and there are at
+     * most 10 digits after the point, one division of two exact values gives the
+     * correctly rounded result. Anything else, such as exponents or longer
+     * numbers, is left to <CODE>Float.parseFloat</CODE>.
+     */
+    private float parseFloat(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+                if (mantissa >= 1 << 24) {
+                    return Float.parseFloat(string(buffer, from, to));
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return Float.parseFloat(string(buffer, from, to));
+            }
+        }
+        if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+            return Float.parseFloat(string(buffer, from, to));
+        }
+        float value = fractionDigits > 0
+                ? (float) (mantissa / POWERS_OF_TEN[fractionDigits])
+                : (float) mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a decimal integer directly from the buffer, leaving anything unusual
+     * to <CODE>Integer.parseInt</CODE>.
+     */
+    private int parseInt(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && buffer.get(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == to || to - i > 9) {
+            return Integer.parseInt(string(buffer, from, to));
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return Integer.parseInt(string(buffer, from, to));
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,402 @@
+package shippingstore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.RandomAccess;
+
+/**
+ * This class stores package orders in columns instead of as one object per order.
+ * Each tracking number of up to 8 ASCII characters is packed into a
+ * <CODE>long</CODE>, 7 bits a character, the type, specification and mailing class
+ * are kept as the <CODE>byte</CODE> ordinals of their enums, and the weights and
+ * volumes are kept in a <CODE>float</CODE> and an <CODE>int</CODE> array. A row
+ * takes 19 bytes, instead of the objects, strings and references of a
+ * <CODE>PackageOrder</CODE> in a list.
+ * <p>
+ * The rows are indexed by tracking number, ignoring case, in an open-addressing
+ * hash table of row numbers that compares the packed tracking numbers, so the
+ * index holds no keys of its own.
+ * <p>
+ * Reading a row with <CODE>get()</CODE> builds a new <CODE>PackageOrder</CODE> from
+ * the columns, which shares the enum constants and is not changed by later changes
+ * to the table. The rows can only be changed with <CODE>addIfAbsent()</CODE> and
+ * <CODE>removeAt()</CODE>.
+ *
+ */
+class PackageOrderTable extends AbstractList<PackageOrder> implements RandomAccess {
+
+    /**
+     * The packed form of a tracking number that does not fit in a <CODE>long</CODE>.
+     * Such tracking numbers are kept in <CODE>unpacked</CODE>.
+     */
+    static final long UNPACKED = -1L;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    static final PackageType[] TYPES = PackageType.values();
+    static final Specification[] SPECIFICATIONS = Specification.values();
+    static final MailingClass[] MAILING_CLASSES = MailingClass.values();
+
+    private long[] trackingNumbers = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private byte[] specifications = new byte[INITIAL_CAPACITY];
+    private byte[] mailingClasses = new byte[INITIAL_CAPACITY];
+    private float[] weights = new float[INITIAL_CAPACITY];
+    private int[] volumes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // Row numbers plus one, so 0 marks a free slot; the length is a power of two
+    private int[] slots = new int[2 * INITIAL_CAPACITY];
+
+    // Tracking numbers of the rows whose number is UNPACKED
+    private final HashMap<Integer, String> unpacked = new HashMap<>();
+
+    /**
+     * Builds the order in a row.
+     *
+     * @param row the row number.
+     * @return a new <CODE>PackageOrder</CODE> with the values of the row.
+     */
+    @Override
+    public PackageOrder get(int row) {
+        checkRow(row);
+        return new PackageOrder(getTrackingNumber(row),
+                types[row] < 0 ? null : TYPES[types[row]],
+                specifications[row] < 0 ? null : SPECIFICATIONS[specifications[row]],
+                mailingClasses[row] < 0 ? null : MAILING_CLASSES[mailingClasses[row]],
+                weights[row], volumes[row]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the tracking number of a row, as it was added.
+     *
+     * @param row the row number.
+     * @return the tracking number.
+     */
+    String getTrackingNumber(int row) {
+        checkRow(row);
+        long code = trackingNumbers[row];
+        return code == UNPACKED ? unpacked.get(row) : unpack(code);
+    }
+
+    /**
+     * Returns the weight of a row.
+     *
+     * @param row the row number.
+     * @return the weight.
+     */
+    float getWeight(int row) {
+        checkRow(row);
+        return weights[row];
+    }
+
+    /**
+     * Finds the row of a tracking number, ignoring case.
+     *
+     * @param trackingNumber the tracking number to look for.
+     * @return the row number, or -1 if no row has that tracking number.
+     */
+    int find(String trackingNumber) {
+        long key = indexKey(trackingNumber);
+        return find(key, key == UNPACKED ? trackingNumber.toUpperCase(Locale.ROOT) : null);
+    }
+
+    /**
+     * Finds the row of an index key, with the upper case tracking number when the
+     * key is <CODE>UNPACKED</CODE>.
+     */
+    private int find(long key, String text) {
+        int mask = slots.length - 1;
+        for (int i = hash(key, text) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int row = slots[i] - 1;
+            if (rowKey(row) == key && (text == null || text.equals(rowText(row)))) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Appends an order as a new row unless a row has the same tracking number,
+     * ignoring case.
+     *
+     * @param order the order to add.
+     * @return true if the order was added.
+     */
+    boolean addIfAbsent(PackageOrder order) {
+        String trackingNumber = order.getTrackingNumber();
+        if (find(trackingNumber) != -1) {
+            return false;
+        }
+        append(pack(trackingNumber), trackingNumber, ordinal(order.getPackageType()),
+                ordinal(order.getPackageSpecification()), ordinal(order.getPackageMailingClass()),
+                order.getWeight(), order.getVolume());
+        return true;
+    }
+
+    /**
+     * Appends a row given in its stored form, as read from a
+     * <CODE>PackageOrderFile</CODE>, unless a row has the same tracking number,
+     * ignoring case.
+     *
+     * @param trackingNumber the packed tracking number, which must not be
+     * <CODE>UNPACKED</CODE>.
+     * @param type the ordinal of the type, or -1 for none.
+     * @param specification the ordinal of the specification, or -1 for none.
+     * @param mailingClass the ordinal of the mailing class, or -1 for none.
+     * @param weight the weight.
+     * @param volume the volume.
+     * @return true if the row was added.
+     */
+    boolean addIfAbsent(long trackingNumber, byte type, byte specification, byte mailingClass,
+            float weight, int volume) {
+        if (find(upperCase(trackingNumber), null) != -1) {
+            return false;
+        }
+        append(trackingNumber, null, type, specification, mailingClass, weight, volume);
+        return true;
+    }
+
+    /**
+     * Appends a row, with the tracking number as a string when it does not pack.
+     */
+    private void append(long code, String trackingNumber, byte type, byte specification,
+            byte mailingClass, float weight, int volume) {
+        if (size == trackingNumbers.length) {
+            grow();
+        }
+        if ((size + 1) * 4L > slots.length * 3L) {
+            rehash(slots.length * 2);
+        }
+
+        int row = size++;
+        trackingNumbers[row] = code;
+        if (code == UNPACKED) {
+            unpacked.put(row, trackingNumber);
+        }
+        types[row] = type;
+        specifications[row] = specification;
+        mailingClasses[row] = mailingClass;
+        weights[row] = weight;
+        volumes[row] = volume;
+        insertSlot(row);
+    }
+
+    /**
+     * Removes a row, moving the last row into its place.
+     *
+     * @param row the row number.
+     */
+    void removeAt(int row) {
+        checkRow(row);
+        deleteSlot(findSlot(row));
+        unpacked.remove(row);
+        int last = size - 1;
+        if (row < last) {
+            slots[findSlot(last)] = row + 1;
+            trackingNumbers[row] = trackingNumbers[last];
+            types[row] = types[last];
+            specifications[row] = specifications[last];
+            mailingClasses[row] = mailingClasses[last];
+            weights[row] = weights[last];
+            volumes[row] = volumes[last];
+            String text = unpacked.remove(last);
+            if (text != null) {
+                unpacked.put(row, text);
+            }
+        }
+        size--;
+    }
+
+    /**
+     * Shrinks the columns to the number of rows, after a bulk load.
+     */
+    void trimToSize() {
+        int capacity = Math.max(size, INITIAL_CAPACITY);
+        if (capacity < trackingNumbers.length) {
+            resize(capacity);
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+        }
+    }
+
+    private void grow() {
+        resize(trackingNumbers.length + (trackingNumbers.length >> 1));
+    }
+
+    private void resize(int capacity) {
+        trackingNumbers = Arrays.copyOf(trackingNumbers, capacity);
+        types = Arrays.copyOf(types, capacity);
+        specifications = Arrays.copyOf(specifications, capacity);
+        mailingClasses = Arrays.copyOf(mailingClasses, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        volumes = Arrays.copyOf(volumes, capacity);
+    }
+
+    /**
+     * Returns the stored form of a type, specification or mailing class.
+     *
+     * @param value the enum value, or null.
+     * @return the ordinal of the value, or -1 for null.
+     */
+    static byte ordinal(Enum<?> value) {
+        return value == null ? -1 : (byte) value.ordinal();
+    }
+
+    /**
+     * Rebuilds the hash table with the given number of slots.
+     */
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int row = 0; row < size; row++) {
+            insertSlot(row);
+        }
+    }
+
+    /**
+     * Puts a row into the first free slot from the slot of its hash.
+     */
+    private void insertSlot(int row) {
+        int mask = slots.length - 1;
+        int i = rowHash(row) & mask;
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = row + 1;
+    }
+
+    /**
+     * Returns the slot that holds a row.
+     */
+    private int findSlot(int row) {
+        int mask = slots.length - 1;
+        int i = rowHash(row) & mask;
+        while (slots[i] != row + 1) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Frees a slot, moving back the rows after it that would otherwise no longer
+     * be found from the slot of their hash.
+     */
+    private void deleteSlot(int free) {
+        int mask = slots.length - 1;
+        for (int i = (free + 1) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int home = rowHash(slots[i] - 1) & mask;
+            // The row can move to the free slot unless its home lies cyclically in (free, i]
+            boolean stays = free <= i ? free < home && home <= i : free < home || home <= i;
+            if (!stays) {
+                slots[free] = slots[i];
+                free = i;
+            }
+        }
+        slots[free] = 0;
+    }
+
+    private int rowHash(int row) {
+        long key = rowKey(row);
+        return hash(key, key == UNPACKED ? rowText(row) : null);
+    }
+
+    /**
+     * Returns the index key of a row's tracking number; see <CODE>indexKey()</CODE>.
+     */
+    private long rowKey(int row) {
+        long code = trackingNumbers[row];
+        return code == UNPACKED ? indexKey(unpacked.get(row)) : upperCase(code);
+    }
+
+    /**
+     * Returns the upper case tracking number of a row whose index key is
+     * <CODE>UNPACKED</CODE>.
+     */
+    private String rowText(int row) {
+        return unpacked.get(row).toUpperCase(Locale.ROOT);
+    }
+
+    private static int hash(long key, String text) {
+        long h = text == null ? key : text.hashCode();
+        return (int) ((h * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    /**
+     * Returns the packed form of a tracking number in upper case, or
+     * <CODE>UNPACKED</CODE> if it does not pack, in which case the upper case
+     * string is the key.
+     */
+    private static long indexKey(String trackingNumber) {
+        long code = pack(trackingNumber);
+        if (code == UNPACKED) {
+            // Some non-ASCII letters have an ASCII upper case
+            code = pack(trackingNumber.toUpperCase(Locale.ROOT));
+        }
+        return code == UNPACKED ? UNPACKED : upperCase(code);
+    }
+
+    /**
+     * Packs a string of up to 8 ASCII characters into a <CODE>long</CODE>: the
+     * length in bits 56 to 59 and character i in bits 7i to 7i + 6.
+     *
+     * @param text the string.
+     * @return the packed string, or <CODE>UNPACKED</CODE> if it is too long or
+     * not ASCII.
+     */
+    static long pack(String text) {
+        int length = text.length();
+        if (length > 8) {
+            return UNPACKED;
+        }
+        long code = (long) length << 56;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c > 0x7F) {
+                return UNPACKED;
+            }
+            code |= (long) c << (7 * i);
+        }
+        return code;
+    }
+
+    /**
+     * Turns a packed string back into a <CODE>String</CODE>.
+     *
+     * @param code the packed string.
+     * @return the string.
+     */
+    static String unpack(long code) {
+        int length = (int) (code >>> 56);
+        byte[] chars = new byte[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (byte) ((code >>> (7 * i)) & 0x7F);
+        }
+        return new String(chars, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Changes the lower case ASCII letters of a packed string to upper case.
+     */
+    private static long upperCase(long code) {
+        int length = (int) (code >>> 56);
+        for (int i = 0; i < length; i++) {
+            long c = (code >>> (7 * i)) & 0x7F;
+            if (c >= 'a' && c <= 'z') {
+                code -= (long) ('a' - 'A') << (7 * i);
+            }
+        }
+        return code;
+    }
+}
@@ -0,0 +1,60 @@
+package shippingstore;
+
+import java.util.HashMap;
+
+/**
+ * This enum represents the type of a package order. Each value has the
+ * label that is used for it in the data file and on the console.
+ *
+ */
+public enum PackageType {
+
+    POSTCARD("Postcard"),
+    LETTER("Letter"),
+    ENVELOPE("Envelope"),
+    PACKET("Packet"),
+    BOX("Box"),
+    CRATE("Crate"),
+    DRUM("Drum"),
+    ROLL("Roll"),
+    TUBE("Tube");
+
+    private static final HashMap<String, PackageType> BY_LABEL = new HashMap<>();
+
+    static {
+        for (PackageType value : values()) {
+            BY_LABEL.put(value.label, value);
+        }
+    }
+
+    private final String label;
+
+    PackageType(String label) {
+        this.label = label;
+    }
+
+    /**
+     * This method returns the label of the type.
+     *
+     * @return a <b><CODE>String</CODE></b> that is the label, such as "Postcard".
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * This method returns the type with the given label. Labels are case
+     * sensitive.
+     *
+     * @param label the label to look up.
+     * @return the <CODE>PackageType</CODE> with that label, or null if there is none.
+     */
+    public static PackageType fromLabel(String label) {
+        return BY_LABEL.get(label);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
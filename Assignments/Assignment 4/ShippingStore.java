@@ -1,29 +1,97 @@
 package shippingstore;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.FileReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.File;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * This class is used to represent a database interface for a list of
  * <CODE>Package Order</CODE>'s. It using a plain-text file "PackageOrderDB.txt"
  * to store and write package order objects in readable text form. It contains
- * an <CODE>ArrayList</CODE> called <CODE>packageOrerList</CODE> to store the
+ * a list called <CODE>packageOrerList</CODE> to store the
  * database in a runtime friendly data structure. The <CODE>packageOrerList</CODE>
  * is written to "PackageOrderDB.txt" at the end of the <CODE>ShippingStore</CODE> object's
  * life by calling <CODE>flush()</CODE>. This class also provides methods for
  * adding, remove, and searching for shipping orders from the list.
+ * <p>
+ * The orders are kept in a <CODE>PackageOrderTable</CODE>, which stores them in
+ * columns of primitive values and indexes them by tracking number, ignoring case,
+ * so finding, adding and removing an order take constant time.
+ * <p>
+ * For weight range queries the weights are kept sorted in a <CODE>float</CODE>
+ * array called <CODE>weightIndex</CODE>, next to the list position of each
+ * order, so a range is found with two binary searches. The index is built on
+ * the first range query and then kept sorted as single orders are added or
+ * removed, with a binary search and an array copy. Reading or importing orders
+ * in bulk drops it instead, and it is built again on the next range query.
+ * <p>
+ * If a log is opened with <CODE>openLog()</CODE>, every added and removed order
+ * is also written to an <CODE>OrderLog</CODE> before it is applied, so changes
+ * survive a crash. Once the log holds <CODE>COMPACT_THRESHOLD</CODE> changes, the
+ * data file is rewritten and the log is emptied.
+ * <p>
+ * The orders can also be saved in a binary <CODE>PackageOrderFile</CODE> of
+ * fixed-width records with <CODE>writeBinary()</CODE>. A binary file opened with
+ * <CODE>openBinary()</CODE> is loaded straight into the order table, and is then
+ * kept in step with it: each added or removed order changes one record of the
+ * mapped file in place, so the file never has to be rewritten.
  *
  */
 public class ShippingStore {
 
+    /**
+     * The size of the buffer that <CODE>flush()</CODE> writes through.
+     */
+    private static final int FLUSH_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Weights below this are formatted without <CODE>String.format</CODE>.
+     */
+    private static final double MAX_FAST_WEIGHT = 1e15;
+
+    /**
+     * The number of logged changes after which the data file is rewritten and
+     * the log emptied.
+     */
+    static final int COMPACT_THRESHOLD = 10000;
+
+    /**
+     * The number of records that <CODE>importOrders()</CODE> validates at a time.
+     */
+    static final int IMPORT_BATCH_SIZE = 1 << 16;
+
     private final File dataFile;
-    private ArrayList<PackageOrder> packageOrderList;
+    private PackageOrderTable packageOrderList;
+    private float[] weightIndex;
+    private int[] weightPositions;
+    private int weightCount;
+    private OrderLog orderLog;
+    private PackageOrderFile binaryFile;
 
     /**
      * This constructor is hard-coded to open "<CODE>PackageOrderDB.txt</CODE>" and
@@ -34,10 +102,21 @@ public class ShippingStore {
      * @throws IOException
      */
     public ShippingStore() throws IOException {
-        
-        dataFile = new File("PackageOrderDB.txt");
-        packageOrderList = new ArrayList<>();
-        
+        this(new File("PackageOrderDB.txt"));
+    }
+
+    /**
+     * This constructor opens the given data file instead of
+     * "<CODE>PackageOrderDB.txt</CODE>". If no such file exists, then one is
+     * created.
+     * @param dataFile the file that holds the package orders.
+     * @throws IOException
+     */
+    public ShippingStore(File dataFile) throws IOException {
+
+        this.dataFile = dataFile;
+        packageOrderList = new PackageOrderTable();
+
 
         // If data file does not exist, create it.
         if (!dataFile.exists()) {
@@ -72,7 +151,7 @@ public class ShippingStore {
      *
      * @param orders the package order list to be displayed.
      */
-    private void showPackageOrders(ArrayList<PackageOrder> orders) {
+    private void showPackageOrders(List<PackageOrder> orders) {
 
         System.out.println(" -------------------------------------------------------------------------- ");
         System.out.println("| Tracking # | Type    | Specification | Class       | Weight(oz) | Volume |");
@@ -94,25 +173,210 @@ public class ShippingStore {
 
     /**
      * This method displays package orders that have a weight within the range of
-     * <CODE>low</CODE> to <CODE>high</CODE>.
+     * <CODE>low</CODE> to <CODE>high</CODE>, in order of weight.
      *
      * @param low a float that is the lower bound weight.
      * @param high a float that is the upper bound weight.
      */
     public void showPackageOrdersRange(float low, float high) {
-        ArrayList<PackageOrder> orders = new ArrayList<>();
-        for (PackageOrder order : packageOrderList) {
-            if ((low <= order.getWeight()) && (order.getWeight() <= high)) {
-                orders.add(order);
-            }
-        }
-        
+        List<PackageOrder> orders = getPackageOrdersRange(low, high);
+
         if (orders.isEmpty())
             System.out.println("No packages found with weight within the given range.\n");
         else
             showPackageOrders(orders);
     }
 
+    /**
+     * This method returns the package orders that have a weight within the range of
+     * <CODE>low</CODE> to <CODE>high</CODE>, in order of weight. The orders are not
+     * copied: the returned list reads them from the store when asked, so it takes
+     * O(log n) time to create. It cannot be modified, and it must not be used after
+     * an order is added to or removed from the store.
+     *
+     * @param low a float that is the lower bound weight.
+     * @param high a float that is the upper bound weight.
+     * @return a read-only <CODE>List</CODE> view of the matching package orders.
+     */
+    public List<PackageOrder> getPackageOrdersRange(float low, float high) {
+        buildWeightIndex();
+        final int from = weightLowerBound(low);
+        final int to = Math.max(from, weightUpperBound(high));
+        final int[] positions = weightPositions;
+
+        return new AbstractList<PackageOrder>() {
+            @Override
+            public PackageOrder get(int i) {
+                if (i < 0 || i >= to - from) {
+                    throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+                }
+                return packageOrderList.get(positions[from + i]);
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    /**
+     * This method counts the package orders that have a weight within the range of
+     * <CODE>low</CODE> to <CODE>high</CODE>, in O(log n) time.
+     *
+     * @param low a float that is the lower bound weight.
+     * @param high a float that is the upper bound weight.
+     * @return the number of matching package orders.
+     */
+    public int countPackageOrdersRange(float low, float high) {
+        buildWeightIndex();
+        return Math.max(0, weightUpperBound(high) - weightLowerBound(low));
+    }
+
+    /**
+     * Builds the sorted weight index if it has been dropped since it was last built.
+     * Each weight is turned into an <CODE>int</CODE> that sorts like the weight and
+     * packed with the order's position into a <CODE>long</CODE>, so one primitive
+     * sort orders both arrays.
+     */
+    private void buildWeightIndex() {
+        if (weightIndex != null) {
+            return;
+        }
+        int n = packageOrderList.size();
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) weightKey(packageOrderList.getWeight(i)) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        float[] weights = new float[n];
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            positions[i] = (int) keys[i];
+            weights[i] = packageOrderList.getWeight(positions[i]);
+        }
+        weightIndex = weights;
+        weightPositions = positions;
+        weightCount = n;
+    }
+
+    /**
+     * Returns an <CODE>int</CODE> that sorts like a weight, with NaN last.
+     */
+    private static int weightKey(float weight) {
+        int bits = Float.floatToIntBits(weight);
+        return bits ^ ((bits >> 31) & Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the index in <CODE>weightIndex</CODE> of the first weight whose key is
+     * not less than <CODE>key</CODE>, or with <CODE>after</CODE> set, greater than it.
+     */
+    private int weightKeyBound(int key, boolean after) {
+        int lo = 0;
+        int hi = weightCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int midKey = weightKey(weightIndex[mid]);
+            if (midKey < key || (after && midKey == key)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index in <CODE>weightIndex</CODE> of the order at a position of
+     * the list, which must be in the index.
+     */
+    private int weightIndexOf(int position) {
+        int i = weightKeyBound(weightKey(packageOrderList.getWeight(position)), false);
+        while (weightPositions[i] != position) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Adds the order at a position of the list to the weight index, if it is built,
+     * after the orders of the same weight.
+     */
+    private void insertWeight(int position) {
+        if (weightIndex == null) {
+            return;
+        }
+        float weight = packageOrderList.getWeight(position);
+        int at = weightKeyBound(weightKey(weight), true);
+        if (weightCount == weightIndex.length) {
+            int capacity = Math.max(16, weightCount + (weightCount >> 1));
+            weightIndex = Arrays.copyOf(weightIndex, capacity);
+            weightPositions = Arrays.copyOf(weightPositions, capacity);
+        }
+        System.arraycopy(weightIndex, at, weightIndex, at + 1, weightCount - at);
+        System.arraycopy(weightPositions, at, weightPositions, at + 1, weightCount - at);
+        weightIndex[at] = weight;
+        weightPositions[at] = position;
+        weightCount++;
+    }
+
+    /**
+     * Takes the order at a position of the list out of the weight index, if it is
+     * built, before the order is removed, and gives the last order, which the
+     * removal moves, its new position.
+     */
+    private void removeWeight(int position) {
+        if (weightIndex == null) {
+            return;
+        }
+        int at = weightIndexOf(position);
+        System.arraycopy(weightIndex, at + 1, weightIndex, at, weightCount - at - 1);
+        System.arraycopy(weightPositions, at + 1, weightPositions, at, weightCount - at - 1);
+        weightCount--;
+        int last = packageOrderList.size() - 1;
+        if (position < last) {
+            weightPositions[weightIndexOf(last)] = position;
+        }
+    }
+
+    /**
+     * Returns the index in <CODE>weightIndex</CODE> of the first weight that is not
+     * less than <CODE>low</CODE>.
+     */
+    private int weightLowerBound(float low) {
+        int lo = 0;
+        int hi = weightCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (weightIndex[mid] < low) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the index in <CODE>weightIndex</CODE> of the first weight that is not
+     * less than or equal to <CODE>high</CODE>. NaN weights sort last and never match.
+     */
+    private int weightUpperBound(float high) {
+        int lo = 0;
+        int hi = weightCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (weightIndex[mid] <= high) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
     /**
      * This method can be used to find a package order in the Arraylist of orders.
      *
@@ -122,20 +386,90 @@ public class ShippingStore {
      * or -1 if the search failed.
      */
     public int findPackageOrder(String trackingNumber) {
+        return packageOrderList.find(trackingNumber);
+    }
 
-        int index = -1;
-
-        for (int i = 0; i < packageOrderList.size(); i++) {
-            String temp = packageOrderList.get(i).getTrackingNumber();
+    /**
+     * Returns a key of a tracking number, so that tracking numbers that differ
+     * only in case share a key.
+     *
+     * @param trackingNumber the tracking number.
+     * @return the tracking number in upper case.
+     */
+    private static String indexKey(String trackingNumber) {
+        return trackingNumber.toUpperCase(Locale.ROOT);
+    }
 
-            if (trackingNumber.equalsIgnoreCase(temp)) {
-                index = i;
-                break;
+    /**
+     * Appends an order to the list unless an order with the same tracking number
+     * is already in it.
+     *
+     * @param order the order to add.
+     * @return true if the order was added.
+     */
+    private boolean addIfAbsent(PackageOrder order) {
+        if (binaryFile != null) {
+            if (packageOrderList.find(order.getTrackingNumber()) != -1) {
+                return false;
             }
+            appendBinary(order);
+        }
+        if (!packageOrderList.addIfAbsent(order)) {
+            return false;
+        }
+        weightIndex = null;
+        return true;
+    }
 
+    /**
+     * Logs orders and appends them to the list, which must not hold their tracking
+     * numbers. They are appended to the open binary file before they are logged, so
+     * that an order the file cannot store is never logged; if the log cannot be
+     * written, they are taken off the end of the file again and none is added.
+     *
+     * @param orders the orders to add.
+     * @throws IOException If a log is open and the orders cannot be logged.
+     */
+    private void addLogged(List<PackageOrder> orders) throws IOException {
+        int appended = 0;
+        try {
+            if (binaryFile != null) {
+                for (PackageOrder order : orders) {
+                    appendBinary(order);
+                    appended++;
+                }
+            }
+            if (orderLog != null) {
+                orderLog.logAddAll(orders);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (; appended > 0; appended--) {
+                binaryFile.removeAt(binaryFile.size() - 1);
+            }
+            throw e;
+        }
+        for (PackageOrder order : orders) {
+            packageOrderList.addIfAbsent(order);
+        }
+        if (orders.size() == 1) {
+            insertWeight(packageOrderList.size() - 1);
+        } else {
+            weightIndex = null;
         }
+    }
 
-        return index;
+    /**
+     * Appends an order to the open binary file, before it is added to the list so
+     * that an order the file cannot store is not added to either.
+     *
+     * @param order the order to add.
+     */
+    private void appendBinary(PackageOrder order) {
+        try {
+            binaryFile.append(order);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
     
     /**
@@ -182,8 +516,11 @@ public class ShippingStore {
      * 6. The Weight must be non-negative.
      * <p>
      * 7. The Volume must be non-negative.
+     * <p>
+     * Rules 2 to 7 are checked by <CODE>PackageOrderBuilder</CODE>.
      * @param toAdd the <CODE>PackageOrder</CODE> object to add to the
      * <CODE>packageOrerList</CODE>
+     * @throws UncheckedIOException If a log is open and the change cannot be logged.
      */
     public void addOrder(String trackingnumber, String type, String specification, String mailingclass, String weight, String volume) {
 
@@ -192,60 +529,38 @@ public class ShippingStore {
             return;
         }
 
-        if (!trackingnumber.matches("[A-Za-z0-9]{5}")) {
-            System.out.println("Invalid Tracking Number: not proper format."
-                + "Tracking Number must be at least 5 alphanumeric characters.");
+        PackageOrderBuilder builder = new PackageOrderBuilder()
+                .setTrackingNumber(trackingnumber)
+                .setType(type)
+                .setSpecification(specification)
+                .setMailingClass(mailingclass)
+                .setWeight(weight)
+                .setVolume(volume);
+        String error = builder.validate();
+        if (error != null) {
+            System.out.println(error);
             return;
         }
 
-        if (!(type.equals("Postcard") || type.equals("Letter") || type.equals("Envelope")
-            || type.equals("Packet") || type.equals("Box")|| type.equals("Crate")
-            || type.equals("Drum")|| type.equals("Roll")|| type.equals("Tube"))) {
-            System.out.println("Invalid type:\n"
-                + "Type must be one of following: "
-                + "Postcard, Letter, Envelope, Packet, Box, Crate, Drum, Roll, Tube.");
-            return;
-        }
-
-        if (!(specification.equals("Fragile") || specification.equals("Books") || specification.equals("Catalogs")
-            || specification.equals("Do-not-Bend") || specification.toUpperCase().equals("N/A"))) {
-            System.out.println("Invalid specification:\n"
-                + "Specification must be one of following: "
-                + "Fragile, Books, Catalogs, Do-not-Bend, N/A.");
-            return;
+        //If passed all the checks, log the order and add it to the list
+        try {
+            addLogged(Collections.singletonList(builder.build()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-
-        if (!(mailingclass.equals("First-Class") || mailingclass.equals("Priority") || mailingclass.equals("Retail")
-            || mailingclass.equals("Ground") || mailingclass.equals("Metro")) ) {
-            System.out.println("Invalid Mailing Class:\n"
-                + "Mailing Class must be one of following: "
-                + "First-Class, Priority, Retail, Ground, Metro.");
-            return;
-        }
-
-        if (Float.parseFloat(weight) < 0) {
-            System.out.println("The weight of package cannot be negative.");
-            return;
-        }
-
-        if (!volume.matches("[0-9]{1,6}")) {
-            System.out.println("Invalid volume:\n"
-                + "The package's volume has to be an integer number between 0 and 999999. ");
-            return;
-        }
-
-        //If passed all the checks, add the order to the list
-        packageOrderList.add(new PackageOrder(trackingnumber, type, specification, mailingclass,
-                Float.parseFloat(weight), Integer.parseInt(volume)));
         System.out.println("Package Order has been added.\n");
+        compactIfNeeded();
     }
 
     /**
      * This method will remove an order from the <CODE>packageOrerList</CODE> ArrayList. It
      * will remove the instance of an order that matches tracking number that was
      * passed to this method. If no such order exists, it will produce an error message.
+     * The last order in the list is moved into the freed position, so the
+     * removal takes constant time.
      *
      * @param toDelete the <CODE>PackageOrder</CODE> object to be removed.
+     * @throws UncheckedIOException If a log is open and the change cannot be logged.
      */
     public void removeOrder(String trackingNum) {
         int orderID = findPackageOrder(trackingNum);
@@ -253,8 +568,121 @@ public class ShippingStore {
             System.out.println("\nAction failed. No package order with the given tracking # exist in database.\n");
         }
         else {
-            packageOrderList.remove(orderID);
+            try {
+                if (orderLog != null) {
+                    orderLog.logRemove(packageOrderList.getTrackingNumber(orderID));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            removeFromList(orderID);
             System.out.println("\nAction successful. Package order has been removed from the database.\n");
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Removes the order at a position of the list, moving the last order into
+     * its place.
+     *
+     * @param orderID the position of the order to remove.
+     */
+    private void removeFromList(int orderID) {
+        removeWeight(orderID);
+        packageOrderList.removeAt(orderID);
+        if (binaryFile != null) {
+            binaryFile.removeAt(orderID);
+        }
+    }
+
+    /**
+     * This method opens a log of changes for the store. The changes already in the
+     * log, which were made after the data file was last written, are applied to the
+     * orders read so far, so it should be called after the data file is read. From
+     * then on every added or removed order is logged before it is applied.
+     * @param logFile The log file, created if it does not exist.
+     * @throws IOException If the log cannot be read or holds an invalid change.
+     */
+    public void openLog(File logFile) throws IOException {
+        OrderLog log = new OrderLog(logFile);
+        try {
+            for (String record : log.readRecords()) {
+                applyRecord(record);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        orderLog = log;
+    }
+
+    /**
+     * Applies a change read from the log. Replaying a change that is already in
+     * the data file has no effect on the final orders, so a crash between
+     * rewriting the data file and emptying the log does no harm.
+     *
+     * @param record the line of the change.
+     * @throws IOException If the line is not a valid change.
+     */
+    private void applyRecord(String record) throws IOException {
+        String[] temp = record.split(" ");
+        try {
+            if (temp[0].length() == 1 && temp[0].charAt(0) == OrderLog.ADD) {
+                addIfAbsent(new PackageOrder(temp[1], temp[2], temp[3], temp[4],
+                        Float.parseFloat(temp[5]), Integer.parseInt(temp[6])));
+                return;
+            }
+            if (temp[0].length() == 1 && temp[0].charAt(0) == OrderLog.REMOVE) {
+                int orderID = findPackageOrder(temp[1]);
+                if (orderID != -1) {
+                    removeFromList(orderID);
+                }
+                return;
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Not a valid log entry: " + record, e);
+        }
+        throw new IOException("Not a valid log entry: " + record);
+    }
+
+    /**
+     * Writes the data file and empties the log once the log holds
+     * <CODE>COMPACT_THRESHOLD</CODE> changes. This runs after a change has been
+     * applied, so a failure is only reported: the changes stay in the log, and
+     * the next change tries again.
+     */
+    private void compactIfNeeded() {
+        if (orderLog != null && orderLog.getRecordCount() >= COMPACT_THRESHOLD) {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.out.println("Could not write the data file, the changes are kept in the log: " + e + "\n");
+            }
+        }
+    }
+
+    /**
+     * This method saves all orders to the data file with <CODE>flush()</CODE> and
+     * then empties the log, whose changes are now in the data file.
+     * @throws IOException If the data file cannot be written or the log emptied.
+     */
+    public void compact() throws IOException {
+        flush();
+        if (orderLog != null) {
+            orderLog.truncate();
+        }
+    }
+
+    /**
+     * This method saves all orders with <CODE>compact()</CODE> and closes the log.
+     * This should be the last method to be called before exiting the program.
+     * @throws IOException If the data file cannot be written or the log closed.
+     */
+    public void closeLog() throws IOException {
+        compact();
+        if (orderLog != null) {
+            orderLog.close();
+            orderLog = null;
         }
     }
 
@@ -277,7 +705,8 @@ public class ShippingStore {
     
     /**
      * This method reads data from the FileReader provided as input and puts them
-     * in the packageOrderList.
+     * in the packageOrderList. An order whose tracking number is already in the
+     * list is skipped.
      * @param dataReader The input FileReader to read from.
      * @throws IOException If any problem occurs with the data input.
      */
@@ -289,14 +718,335 @@ public class ShippingStore {
         while (orderScanner.hasNextLine()) {
 
             // split values using the space character as separator
-            String[] temp = orderScanner.nextLine().split(" ");
+            String line = orderScanner.nextLine();
+            String[] temp = line.split(" ");
 
-            packageOrderList.add(new PackageOrder(temp[0], temp[1], temp[2], temp[3],
-                    Float.parseFloat(temp[4]), Integer.parseInt(temp[5])));
+            try {
+                addIfAbsent(new PackageOrder(temp[0], temp[1], temp[2], temp[3],
+                        Float.parseFloat(temp[4]), Integer.parseInt(temp[5])));
+            } catch (IllegalArgumentException e) {
+                orderScanner.close();
+                throw new IOException("Not a valid package order: " + line, e);
+            }
         }
 
         //Package order list is now in the ArrayList completely so we can close the file
         orderScanner.close();
+        packageOrderList.trimToSize();
+    }
+
+    /**
+     * This method reads the package orders of a data file and puts them in the
+     * packageOrderList. It gives the same result as <CODE>read(Reader)</CODE> on the
+     * file, but reads the file through a <CODE>FileChannel</CODE> and parses its bytes
+     * directly, which is much faster for large files. An order whose tracking number
+     * is already in the list is skipped.
+     * @param file The data file to read from.
+     * @throws IOException If the file cannot be read or holds an invalid order.
+     */
+    public void read(File file) throws IOException {
+        new PackageOrderParser().parse(file, this::addIfAbsent);
+        packageOrderList.trimToSize();
+    }
+
+    /**
+     * This method reads the package orders of a data file like <CODE>read(File)</CODE>,
+     * but parses the file on as many threads as there are cores.
+     * @param file The data file to read from.
+     * @throws IOException If the file cannot be read or holds an invalid order.
+     */
+    public void readParallel(File file) throws IOException {
+        readParallel(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * This method reads the package orders of a data file like <CODE>read(File)</CODE>,
+     * but splits a large file into one chunk per thread at line boundaries and parses
+     * the chunks at the same time. The parsed orders are then added in file order, so
+     * the first order with a given tracking number is kept, as with <CODE>read(File)</CODE>.
+     * @param file The data file to read from.
+     * @param numThreads The number of threads to parse with.
+     * @throws IOException If the file cannot be read or holds an invalid order.
+     */
+    public void readParallel(File file, int numThreads) throws IOException {
+        if (numThreads <= 1) {
+            read(file);
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            PackageOrderParser.parseParallel(file, pool, this::addIfAbsent);
+        } finally {
+            pool.shutdown();
+        }
+        packageOrderList.trimToSize();
+    }
+
+    /**
+     * This method adds package orders from a feed of records in bulk, like
+     * <CODE>importOrders(Iterator, int)</CODE>, validating on as many threads as there
+     * are cores.
+     * @param records The records to import, each holding the tracking number, type,
+     * specification, mailing class, weight and volume of an order.
+     * @return The number of orders added and the records that were rejected.
+     * @throws IOException If a log is open and the changes cannot be logged.
+     */
+    public ImportResult importOrders(Iterator<String[]> records) throws IOException {
+        return importOrders(records, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * This method adds package orders from a feed of records in bulk. Each record
+     * is checked with the rules of <CODE>addOrder()</CODE>, but nothing is printed:
+     * every record that is not added is returned with its position in the feed and
+     * the message <CODE>addOrder()</CODE> would have printed. A record whose tracking
+     * number is already in the database, or earlier in the feed, is rejected, so the
+     * first order with a given tracking number is kept.
+     * <p>
+     * The records are taken in batches of <CODE>IMPORT_BATCH_SIZE</CODE>. The records
+     * of a batch are validated on the threads at the same time, then checked for
+     * duplicates and added in feed order, and the added orders of the batch are
+     * logged with a single <CODE>fsync</CODE> if a log is open.
+     * @param records The records to import, each holding the tracking number, type,
+     * specification, mailing class, weight and volume of an order.
+     * @param numThreads The number of threads to validate with.
+     * @return The number of orders added and the records that were rejected.
+     * @throws IOException If a log is open and the changes cannot be logged.
+     */
+    public ImportResult importOrders(Iterator<String[]> records, int numThreads) throws IOException {
+        ImportResult result = new ImportResult();
+        ForkJoinPool pool = numThreads > 1 ? new ForkJoinPool(numThreads) : null;
+        try {
+            List<String[]> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            PackageOrder[] orders = new PackageOrder[IMPORT_BATCH_SIZE];
+            String[] errors = new String[IMPORT_BATCH_SIZE];
+            long recordNumber = 0;
+            while (records.hasNext()) {
+                batch.clear();
+                while (batch.size() < IMPORT_BATCH_SIZE && records.hasNext()) {
+                    batch.add(records.next());
+                }
+
+                IntConsumer validate = i -> {
+                    orders[i] = null;
+                    errors[i] = null;
+                    String[] fields = batch.get(i);
+                    if (fields == null || fields.length != 6) {
+                        errors[i] = "Not correct number of fields to process.";
+                        return;
+                    }
+                    PackageOrderBuilder builder = new PackageOrderBuilder()
+                            .setTrackingNumber(fields[0])
+                            .setType(fields[1])
+                            .setSpecification(fields[2])
+                            .setMailingClass(fields[3])
+                            .setWeight(fields[4])
+                            .setVolume(fields[5]);
+                    errors[i] = builder.validate();
+                    if (errors[i] == null) {
+                        orders[i] = builder.build();
+                    }
+                };
+                if (pool != null) {
+                    pool.submit(() -> IntStream.range(0, batch.size()).parallel().forEach(validate)).join();
+                } else {
+                    IntStream.range(0, batch.size()).forEach(validate);
+                }
+
+                List<PackageOrder> accepted = new ArrayList<>();
+                HashSet<String> batchKeys = new HashSet<>();
+                for (int i = 0; i < batch.size(); i++, recordNumber++) {
+                    if (orders[i] == null) {
+                        String[] fields = batch.get(i);
+                        result.addReject(recordNumber, fields == null || fields.length == 0 ? null : fields[0],
+                                errors[i]);
+                        continue;
+                    }
+                    String key = indexKey(orders[i].getTrackingNumber());
+                    if (packageOrderList.find(orders[i].getTrackingNumber()) != -1 || !batchKeys.add(key)) {
+                        result.addReject(recordNumber, orders[i].getTrackingNumber(),
+                                "Package Order already exists in database.");
+                        continue;
+                    }
+                    accepted.add(orders[i]);
+                }
+
+                addLogged(accepted);
+                result.addAccepted(accepted.size());
+                compactIfNeeded();
+            }
+            packageOrderList.trimToSize();
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This method overwrites the data file with a text representation of all the
+     * package orders in the <CODE>PackageOrderList</CODE>, in the same format as
+     * <CODE>flush(Writer)</CODE>. The orders are first written through one large
+     * buffer to a temporary file next to the data file, which is forced to disk and
+     * then renamed over the data file in one step. If the program stops part way
+     * through, the old data file is left as it was.
+     * @throws IOException If the file cannot be written or renamed.
+     */
+    public void flush() throws IOException {
+        File dir = dataFile.getAbsoluteFile().getParentFile();
+        File tempFile = File.createTempFile(dataFile.getName(), ".tmp", dir);
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        Channels.newOutputStream(channel), StandardCharsets.UTF_8), FLUSH_BUFFER_SIZE);
+                StringBuilder line = new StringBuilder(64);
+                for (PackageOrder order : packageOrderList) {
+                    line.setLength(0);
+                    appendOrder(line, order);
+                    out.append(line);
+                }
+                out.flush();
+                channel.force(true);
+            }
+            replaceFile(tempFile, dataFile);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Renames a temporary file over a file in one step, where the file system
+     * allows it.
+     *
+     * @param tempFile the new contents.
+     * @param file the file to replace.
+     * @throws IOException If the file cannot be renamed.
+     */
+    private static void replaceFile(File tempFile, File file) throws IOException {
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * This method writes all the package orders to a binary file of fixed-width
+     * records; see <CODE>PackageOrderFile</CODE>. Like <CODE>flush()</CODE>, it writes
+     * a temporary file next to the given one, forces it to disk and renames it over
+     * the given file.
+     * @param file The binary file to write.
+     * @throws IOException If the file cannot be written or renamed.
+     * @throws IllegalArgumentException If a tracking number is longer than 8
+     * characters or not in ASCII, which the binary format cannot store.
+     */
+    public void writeBinary(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            PackageOrderFile.create(tempFile, packageOrderList).close();
+            replaceFile(tempFile, file);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * This method opens a binary file of package orders written by
+     * <CODE>writeBinary()</CODE>, or creates one if it does not exist, and keeps it
+     * open: from then on every added or removed order is also written to the file
+     * in place. The records of an existing file are added to the orders without a
+     * text form, skipping tracking numbers that are already in the store. If the
+     * store held orders before, or the file held duplicates, the file is rewritten
+     * with all the orders so that its records match the store's.
+     * @param file The binary file.
+     * @throws IOException If the file cannot be read or written, or is not a valid
+     * binary file.
+     * @throws IllegalArgumentException If a tracking number cannot be stored in the
+     * binary format.
+     */
+    public void openBinary(File file) throws IOException {
+        closeBinary();
+        boolean matches = packageOrderList.isEmpty();
+        PackageOrderFile binary = null;
+        if (file.exists() && file.length() > 0) {
+            binary = PackageOrderFile.open(file);
+            try {
+                matches &= binary.addTo(packageOrderList) == binary.size();
+            } catch (IOException | RuntimeException e) {
+                binary.close();
+                throw e;
+            }
+            weightIndex = null;
+            packageOrderList.trimToSize();
+        }
+        if (binary == null || !matches) {
+            if (binary != null) {
+                binary.close();
+            }
+            writeBinary(file);
+            binary = PackageOrderFile.open(file);
+        }
+        binaryFile = binary;
+    }
+
+    /**
+     * This method forces the changes to the open binary file to disk and closes it.
+     * It does nothing if no binary file is open.
+     * @throws IOException If the file cannot be closed.
+     */
+    public void closeBinary() throws IOException {
+        if (binaryFile != null) {
+            binaryFile.close();
+            binaryFile = null;
+        }
+    }
+
+    /**
+     * Appends the text representation of an order, as given by its
+     * <CODE>toString()</CODE>, without going through <CODE>String.format</CODE>.
+     *
+     * @param line the builder to append to.
+     * @param order the order to append.
+     */
+    static void appendOrder(StringBuilder line, PackageOrder order) {
+        line.append(order.getTrackingNumber()).append(' ')
+                .append(order.getType()).append(' ')
+                .append(order.getSpecification()).append(' ')
+                .append(order.getMailingClass()).append(' ');
+        appendWeight(line, order.getWeight());
+        line.append(' ').append(order.getVolume()).append('\n');
+    }
+
+    /**
+     * Appends a weight with two decimals, rounded half up like <CODE>"%.2f"</CODE>.
+     * A <CODE>float</CODE> times 100 is exact as a <CODE>double</CODE>, so rounding it
+     * gives the same digits as the formatter. Values too large for a <CODE>long</CODE>
+     * number of hundredths, and NaN or infinite values, are left to
+     * <CODE>String.format</CODE>. The decimal separator is always a point, which is
+     * what <CODE>read()</CODE> expects.
+     *
+     * @param line the builder to append to.
+     * @param weight the weight to append.
+     */
+    static void appendWeight(StringBuilder line, float weight) {
+        double magnitude = Math.abs((double) weight);
+        if (!(magnitude < MAX_FAST_WEIGHT)) {
+            line.append(String.format(Locale.ROOT, "%.2f", weight));
+            return;
+        }
+        if (Float.floatToRawIntBits(weight) < 0) {
+            line.append('-');
+        }
+        long hundredths = Math.round(magnitude * 100.0);
+        long fraction = hundredths % 100;
+        line.append(hundredths / 100).append('.');
+        if (fraction < 10) {
+            line.append('0');
+        }
+        line.append(fraction);
     }
 
     /**
@@ -0,0 +1,234 @@
+package shippingstore;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * This class times the <CODE>ShippingStore</CODE> operations that look up
+ * orders by tracking number or weight. It writes a data file with a given number of
+ * random package orders (1,000,000 by default), loads it with
+ * <CODE>read(Reader)</CODE>, <CODE>read(File)</CODE> and
+ * <CODE>readParallel()</CODE>, which all check every order for a duplicate, measures
+ * the heap the loaded orders take, imports them as records with
+ * <CODE>importOrders()</CODE>, and then finds orders by
+ * tracking number, runs weight range queries, writes the orders back with both
+ * <CODE>flush()</CODE> methods, writes and opens them as a binary file and removes
+ * orders by tracking number.
+ *
+ */
+public class ShippingStoreBenchmark {
+
+    private static final String[] TYPES = {"Postcard", "Letter", "Envelope", "Packet", "Box",
+        "Crate", "Drum", "Roll", "Tube"};
+    private static final String[] SPECIFICATIONS = {"Fragile", "Books", "Catalogs",
+        "Do-not-Bend", "N/A"};
+    private static final String[] MAILING_CLASSES = {"First-Class", "Priority", "Retail",
+        "Ground", "Metro"};
+
+    /**
+     * The number of five-character alphanumeric tracking numbers, 36^5.
+     */
+    private static final long TRACKING_NUMBERS = 36L * 36 * 36 * 36 * 36;
+
+    /**
+     * The number of weight range queries of each kind.
+     */
+    private static final int RANGE_QUERIES = 10000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args an optional number of orders to load
+     * @throws IOException if the data file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        File dir = File.createTempFile("shippingstore", "");
+        dir.delete();
+        dir.mkdir();
+        File dataFile = new File(dir, "PackageOrderDB.txt");
+        File binaryFile = new File(dir, "PackageOrderDB.bin");
+        try {
+            String[] trackingNumbers = writeOrders(dataFile, count);
+
+            ShippingStore store = new ShippingStore(dataFile);
+            long startTime = System.currentTimeMillis();
+            store.read(new FileReader(dataFile));
+            long endTime = System.currentTimeMillis();
+            System.out.printf("read %10d orders   =>  %6d ms  (Scanner)%n", count, endTime - startTime);
+
+            store = new ShippingStore(dataFile);
+            startTime = System.currentTimeMillis();
+            store.read(dataFile);
+            endTime = System.currentTimeMillis();
+            System.out.printf("read %10d orders   =>  %6d ms  (FileChannel)%n", count, endTime - startTime);
+
+            int threads = Runtime.getRuntime().availableProcessors();
+            store = new ShippingStore(dataFile);
+            startTime = System.currentTimeMillis();
+            store.readParallel(dataFile, threads);
+            endTime = System.currentTimeMillis();
+            System.out.printf("read %10d orders   =>  %6d ms  (%d threads)%n", count, endTime - startTime,
+                    threads);
+
+            // The heap taken by the loaded orders, against one object per order in
+            // a list and a map of tracking numbers as the store held them before
+            store = null;
+            long baseHeap = usedHeap();
+            store = new ShippingStore(dataFile);
+            store.read(dataFile);
+            long tableHeap = usedHeap() - baseHeap;
+            ArrayList<PackageOrder> objects = new ArrayList<>();
+            HashMap<String, Integer> objectIndex = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                PackageOrder order = store.getPackageOrder(i);
+                objectIndex.put(order.getTrackingNumber().toUpperCase(Locale.ROOT), objects.size());
+                objects.add(order);
+            }
+            long objectHeap = usedHeap() - baseHeap - tableHeap;
+            System.out.printf("heap %10d orders   =>  %6d KB  (%d KB as objects, %.1fx)%n", count,
+                    tableHeap / 1024, objectHeap / 1024, (double) objectHeap / tableHeap);
+            objects = null;
+            objectIndex = null;
+
+            List<String[]> records = new ArrayList<>(count);
+            for (String line : Files.readAllLines(dataFile.toPath())) {
+                records.add(line.split(" "));
+            }
+            ShippingStore imported = new ShippingStore(dataFile);
+            startTime = System.currentTimeMillis();
+            ImportResult result = imported.importOrders(records.iterator(), threads);
+            endTime = System.currentTimeMillis();
+            System.out.printf("import %8d orders   =>  %6d ms  (%d threads, %d rejects)%n",
+                    result.getAcceptedCount(), endTime - startTime, threads, result.getRejects().size());
+
+            startTime = System.currentTimeMillis();
+            int found = 0;
+            for (String trackingNumber : trackingNumbers) {
+                if (store.findPackageOrder(trackingNumber.toLowerCase()) != -1) {
+                    found++;
+                }
+            }
+            endTime = System.currentTimeMillis();
+            System.out.printf("find %10d orders   =>  %6d ms%n", found, endTime - startTime);
+
+            // weight brackets of 1% of the weight range each, with the index
+            // built by the first query
+            startTime = System.currentTimeMillis();
+            long matches = 0;
+            for (int i = 0; i < RANGE_QUERIES; i++) {
+                float low = (i % 100) * 100f;
+                matches += store.countPackageOrdersRange(low, low + 100f);
+                matches += store.getPackageOrdersRange(low, low + 100f).size();
+            }
+            endTime = System.currentTimeMillis();
+            System.out.printf("range %9d queries  =>  %6d ms  (%d matches)%n", 2 * RANGE_QUERIES,
+                    endTime - startTime, matches);
+
+            startTime = System.currentTimeMillis();
+            store.flush();
+            endTime = System.currentTimeMillis();
+            System.out.printf("flush %8d orders   =>  %6d ms%n", count, endTime - startTime);
+
+            startTime = System.currentTimeMillis();
+            try (Writer writer = new PrintWriter(dataFile)) {
+                store.flush(writer);
+            }
+            endTime = System.currentTimeMillis();
+            System.out.printf("flush %8d orders   =>  %6d ms  (PrintWriter)%n", count, endTime - startTime);
+
+            startTime = System.currentTimeMillis();
+            store.writeBinary(binaryFile);
+            endTime = System.currentTimeMillis();
+            System.out.printf("write %8d orders   =>  %6d ms  (binary)%n", count, endTime - startTime);
+
+            ShippingStore mapped = new ShippingStore(dataFile);
+            startTime = System.currentTimeMillis();
+            mapped.openBinary(binaryFile);
+            endTime = System.currentTimeMillis();
+            System.out.printf("open %9d orders   =>  %6d ms  (binary)%n", count, endTime - startTime);
+            mapped.closeBinary();
+
+            // removeOrder prints a line per order, which is not what we time
+            PrintStream originalOut = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            int removed = count / 2;
+            startTime = System.currentTimeMillis();
+            for (int i = 0; i < removed; i++) {
+                store.removeOrder(trackingNumbers[i]);
+            }
+            endTime = System.currentTimeMillis();
+            System.setOut(originalOut);
+            System.out.printf("remove %8d orders   =>  %6d ms%n", removed, endTime - startTime);
+        } finally {
+            dataFile.delete();
+            binaryFile.delete();
+            dir.delete();
+        }
+    }
+
+    /**
+     * Returns the heap in use after garbage collection.
+     *
+     * @return the used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // Collect until the used heap stops shrinking
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    /**
+     * Writes the given number of random package orders with distinct tracking
+     * numbers to a file, in the format read by <CODE>ShippingStore</CODE>.
+     *
+     * @param file the file to write
+     * @param count the number of orders
+     * @return the tracking numbers of the orders, in file order
+     * @throws IOException if the file cannot be written
+     */
+    static String[] writeOrders(File file, int count) throws IOException {
+        Random rand = new Random(3354);
+        String[] trackingNumbers = new String[count];
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < count; i++) {
+                // Step through the 36^5 five-character numbers with a prime
+                // stride, so none repeat; the leading 1 keeps the zero padding
+                long n = i * 7919L % TRACKING_NUMBERS;
+                String trackingNumber = Long.toString(TRACKING_NUMBERS + n, 36)
+                        .substring(1).toUpperCase();
+                trackingNumbers[i] = trackingNumber;
+                out.write(new PackageOrder(trackingNumber,
+                        TYPES[rand.nextInt(TYPES.length)],
+                        SPECIFICATIONS[rand.nextInt(SPECIFICATIONS.length)],
+                        MAILING_CLASSES[rand.nextInt(MAILING_CLASSES.length)],
+                        rand.nextInt(1000000) / 100f,
+                        rand.nextInt(1000000)).toString());
+            }
+        }
+        return trackingNumbers;
+    }
+}
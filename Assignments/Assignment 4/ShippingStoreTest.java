@@ -7,7 +7,12 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 import java.io.*;
 import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 
 /**
@@ -45,7 +50,7 @@ public class ShippingStoreTest {
 
         pack1 = new PackageOrder("BXF24","Drum", "Fragile", "First-Class", 7.00f, 83);
         pack2 = new PackageOrder("12345","Crate", "Books", "Priority", 6.00f, 91);
-        pack3 = new PackageOrder("ABC12","Envelope", "Catalog", "Ground", 2.00f, 23);
+        pack3 = new PackageOrder("ABC12","Envelope", "Catalogs", "Ground", 2.00f, 23);
         pack4 = new PackageOrder("9379A","Box", "Fragile", "First-Class", 26.00f, 75);
 
         packageOrderList.add(pack1);
@@ -130,6 +135,73 @@ public class ShippingStoreTest {
         assertArrayEquals("Number are in between 40-55",expectedN,actualN,10); 
     }
 
+    /**
+     * Checks that the orders within a weight range are returned in order of weight, with
+     * both bounds included, and that the count matches.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void getPackageOrdersRange() throws Exception {
+        shippingStore.read(new StringReader("BXF24 Drum Fragile First-Class 7.00 83\n"
+                + "12345 Crate Books Priority 6.00 91\n"
+                + "ABC12 Envelope Catalogs Ground 2.00 23\n"
+                + "9379A Box Fragile First-Class 26.00 75\n"));
+
+        List<PackageOrder> orders = shippingStore.getPackageOrdersRange(2.0f, 7.0f);
+        assertEquals(3, orders.size());
+        assertEquals("ABC12", orders.get(0).getTrackingNumber());
+        assertEquals("12345", orders.get(1).getTrackingNumber());
+        assertEquals("BXF24", orders.get(2).getTrackingNumber());
+        assertEquals(3, shippingStore.countPackageOrdersRange(2.0f, 7.0f));
+        assertEquals(0, shippingStore.countPackageOrdersRange(8.0f, 20.0f));
+        assertEquals(0, shippingStore.countPackageOrdersRange(7.0f, 2.0f));
+
+        shippingStore.removeOrder("12345");
+        assertEquals(2, shippingStore.countPackageOrdersRange(2.0f, 7.0f));
+        assertEquals("BXF24", shippingStore.getPackageOrdersRange(6.5f, 30.0f).get(0).getTrackingNumber());
+    }
+
+    /**
+     * Checks that the weight index is kept in step with orders added and removed one at a
+     * time between range queries, including orders of the same weight.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void weightRangeFollowsChanges() throws Exception {
+        Random random = new Random(17);
+        List<String> trackingNumbers = new ArrayList<>();
+        List<Float> weights = new ArrayList<>();
+        for (int step = 0; step < 300; step++) {
+            if (trackingNumbers.isEmpty() || random.nextInt(3) > 0) {
+                String trackingNumber = String.format("T%04d", step);
+                float weight = random.nextInt(20) / 2f;
+                shippingStore.addOrder(trackingNumber, "Box", "Books", "Metro", Float.toString(weight), "1");
+                trackingNumbers.add(trackingNumber);
+                weights.add(weight);
+            } else {
+                int i = random.nextInt(trackingNumbers.size());
+                shippingStore.removeOrder(trackingNumbers.remove(i));
+                weights.remove(i);
+            }
+
+            float low = random.nextInt(20) / 2f;
+            float high = low + random.nextInt(6);
+            int expected = 0;
+            for (float weight : weights) {
+                if (weight >= low && weight <= high) {
+                    expected++;
+                }
+            }
+            List<PackageOrder> orders = shippingStore.getPackageOrdersRange(low, high);
+            assertEquals(expected, orders.size());
+            for (int i = 0; i < orders.size(); i++) {
+                float weight = orders.get(i).getWeight();
+                assertTrue(weight >= low && weight <= high);
+                assertTrue(i == 0 || orders.get(i - 1).getWeight() <= weight);
+            }
+        }
+    }
+
     /**
      * Checks if the program verifies user input and see if the package within the object list matches with
      * the users information for the package.
@@ -158,6 +230,246 @@ public class ShippingStoreTest {
                 (packageOrderList.get(0).getTrackingNumber()).matches("00000"));
     }
 
+    /**
+     * Checks that an order read from the data file can be found by its tracking number
+     * in any case, and that an unknown tracking number is not found.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void findPackageOrderIgnoresCase() throws Exception {
+        shippingStore.read(new StringReader("BXF24 Drum Fragile First-Class 7.00 83\n"
+                + "12345 Crate Books Priority 6.00 91\n"));
+
+        int index = shippingStore.findPackageOrder("BXF24");
+        assertEquals(index, shippingStore.findPackageOrder("bxf24"));
+        assertEquals("BXF24", shippingStore.getPackageOrder(index).getTrackingNumber());
+        assertEquals(-1, shippingStore.findPackageOrder("00000"));
+    }
+
+    /**
+     * Checks that orders with a tracking number that is already in the list are not read twice.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void readSkipsDuplicates() throws Exception {
+        shippingStore.read(new StringReader("BXF24 Drum Fragile First-Class 7.00 83\n"
+                + "bxf24 Box Books Retail 1.00 10\n"
+                + "12345 Crate Books Priority 6.00 91\n"));
+
+        assertEquals("Drum", shippingStore.getPackageOrder(shippingStore.findPackageOrder("BXF24")).getType());
+        assertNotNull(shippingStore.getPackageOrder(1));
+        assertNull(shippingStore.getPackageOrder(2));
+    }
+
+    /**
+     * Checks that an order with a label that is not known is rejected, and reported with
+     * its line when a data file or log is read, instead of being loaded without the label.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void readRejectsUnknownLabels() throws Exception {
+        String line = "ABC12 Envelope Catalog Ground 2.00 23";
+        try {
+            new PackageOrder("ABC12", "Envelope", "Catalog", "Ground", 2.00f, 23);
+            fail("Unknown label was accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown specification: Catalog", e.getMessage());
+        }
+        try {
+            shippingStore.read(new StringReader("BXF24 Drum Fragile First-Class 7.00 83\n" + line + "\n"));
+            fail("Unknown label was read");
+        } catch (IOException e) {
+            assertEquals("Not a valid package order: " + line, e.getMessage());
+        }
+
+        File dir = File.createTempFile("shippingstore", "");
+        dir.delete();
+        dir.mkdir();
+        File file = new File(dir, "PackageOrderDB.txt");
+        File logFile = new File(dir, "PackageOrderDB.log");
+        try {
+            try (FileWriter writer = new FileWriter(file)) {
+                writer.write(line + "\n");
+            }
+            try {
+                new ShippingStore(file).read(file);
+                fail("Unknown label was read");
+            } catch (IOException e) {
+                assertEquals("Not a valid package order: " + line, e.getMessage());
+            }
+
+            try (FileWriter writer = new FileWriter(logFile)) {
+                writer.write("A " + line + "\n");
+            }
+            try {
+                new ShippingStore(file).openLog(logFile);
+                fail("Unknown label was replayed");
+            } catch (IOException e) {
+                assertEquals("Not a valid log entry: A " + line, e.getMessage());
+            }
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * Checks that the remaining orders can still be found after an order is removed.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void removeOrderKeepsOthersFindable() throws Exception {
+        shippingStore.read(new StringReader("BXF24 Drum Fragile First-Class 7.00 83\n"
+                + "12345 Crate Books Priority 6.00 91\n"
+                + "ABC12 Envelope Catalogs Ground 2.00 23\n"));
+
+        shippingStore.removeOrder("bxf24");
+
+        assertEquals(-1, shippingStore.findPackageOrder("BXF24"));
+        for (String trackingNumber : new String[] {"12345", "ABC12"}) {
+            int index = shippingStore.findPackageOrder(trackingNumber);
+            assertEquals(trackingNumber, shippingStore.getPackageOrder(index).getTrackingNumber());
+        }
+        assertNull(shippingStore.getPackageOrder(2));
+    }
+
+    /**
+     * Checks that the order builder accepts valid fields, maps the labels to enums and
+     * reports the first invalid field.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void packageOrderBuilder() throws Exception {
+        PackageOrder order = new PackageOrderBuilder().setTrackingNumber("ab12Z").setType("Tube")
+                .setSpecification("n/a").setMailingClass("Metro").setWeight("12.5").setVolume("999999")
+                .build();
+        assertEquals(PackageType.TUBE, order.getPackageType());
+        assertEquals(Specification.NOT_APPLICABLE, order.getPackageSpecification());
+        assertEquals("N/A", order.getSpecification());
+        assertEquals(MailingClass.METRO, order.getPackageMailingClass());
+        assertEquals(12.5f, order.getWeight(), 0);
+        assertEquals(999999, order.getVolume());
+
+        PackageOrderBuilder builder = new PackageOrderBuilder().setTrackingNumber("ab12Z").setType("Tube")
+                .setSpecification("Books").setMailingClass("Metro").setWeight("1").setVolume("1");
+        assertNull(builder.validate());
+        assertTrue(builder.setTrackingNumber("ab-2Z").validate().startsWith("Invalid Tracking Number"));
+        assertTrue(builder.setTrackingNumber("ab12Z").setType("tube").validate().startsWith("Invalid type"));
+        assertTrue(builder.setType("Tube").setWeight("heavy").validate().startsWith("Invalid weight"));
+        assertTrue(builder.setWeight("-1").validate().startsWith("The weight of package cannot be negative"));
+        assertTrue(builder.setWeight("1").setVolume("1000000").validate().startsWith("Invalid volume"));
+    }
+
+    /**
+     * Tests that the columnar table gives back the orders it holds, finds them ignoring case, and keeps
+     * finding them when a removal moves the last row, including tracking numbers too long to pack.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void packageOrderTable() throws Exception {
+        PackageOrderTable table = new PackageOrderTable();
+        for (PackageOrder order : packageOrderList) {
+            assertTrue(table.addIfAbsent(order));
+        }
+        PackageOrder longNumber = new PackageOrder("TRACK-000042", "Roll", "N/A", "Retail", 1.25f, 9);
+        assertTrue(table.addIfAbsent(longNumber));
+        assertTrue(table.addIfAbsent(pack4));
+        assertFalse(table.addIfAbsent(new PackageOrder("bxf24", "Box", "Books", "Metro", 1f, 1)));
+        assertFalse(table.addIfAbsent(new PackageOrder("track-000042", "Box", "Books", "Metro", 1f, 1)));
+        assertEquals(5, table.size());
+
+        assertEquals(pack1.toString(), table.get(0).toString());
+        assertEquals(longNumber.toString(), table.get(3).toString());
+        assertEquals(1, table.find("12345"));
+        assertEquals(3, table.find("Track-000042"));
+
+        table.removeAt(0);
+        assertEquals(-1, table.find("BXF24"));
+        assertEquals(0, table.find("9379a"));
+        assertEquals(pack4.toString(), table.get(0).toString());
+        table.removeAt(1);
+        assertEquals(1, table.find("TRACK-000042"));
+        assertEquals("TRACK-000042", table.getTrackingNumber(1));
+        assertEquals(2, table.find("ABC12"));
+        assertEquals(3, table.size());
+    }
+
+    /**
+     * Tests that orders written to a binary file are loaded again by openBinary, and that orders added and
+     * removed while the binary file is open are written to it in place.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void openBinaryUpdatesInPlace() throws Exception {
+        File dir = File.createTempFile("shippingstore", "");
+        dir.delete();
+        dir.mkdir();
+        File file = new File(dir, "PackageOrderDB.txt");
+        File binaryFile = new File(dir, "PackageOrderDB.bin");
+        try {
+            ShippingStore store = new ShippingStore(file);
+            store.read(new StringReader("BXF24 Drum Fragile First-Class 7.00 83\n"
+                    + "12345 Crate Books Priority 6.00 91\n"));
+            store.writeBinary(binaryFile);
+            assertEquals(PackageOrderFile.HEADER_SIZE + 1024 * PackageOrderFile.RECORD_SIZE, binaryFile.length());
+
+            ShippingStore opened = new ShippingStore(file);
+            opened.openBinary(binaryFile);
+            assertEquals(0, opened.findPackageOrder("bxf24"));
+            assertEquals(PackageType.CRATE, opened.getPackageOrder(1).getPackageType());
+            opened.addOrder("ABC12", "Envelope", "Catalogs", "Ground", "2.50", "23");
+            opened.removeOrder("BXF24");
+            opened.closeBinary();
+
+            ShippingStore reopened = new ShippingStore(file);
+            reopened.openBinary(binaryFile);
+            assertEquals(2, reopened.countPackageOrdersRange(0, 100));
+            assertEquals(-1, reopened.findPackageOrder("BXF24"));
+            assertEquals(0, reopened.findPackageOrder("ABC12"));
+            assertEquals("ABC12 Envelope Catalogs Ground 2.50 23\n", reopened.getPackageOrder(0).toString());
+            reopened.closeBinary();
+        } finally {
+            file.delete();
+            binaryFile.delete();
+            dir.delete();
+        }
+    }
+
+    /**
+     * Tests that a bulk import adds the valid records and returns the others with their reasons,
+     * keeping the first of two records with the same tracking number.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void importOrders() throws Exception {
+        shippingStore.read(new StringReader("BXF24 Drum Fragile First-Class 7.00 83\n"));
+        List<String[]> records = Arrays.asList(
+                new String[]{"12345", "Crate", "Books", "Priority", "6.00", "91"},
+                new String[]{"bxf24", "Box", "Fragile", "Metro", "1", "1"},
+                new String[]{"ABC12", "Envelope", "Catalogs"},
+                new String[]{"ABC12", "Envelope", "Catalogs", "Ground", "-2", "23"},
+                new String[]{"9379A", "Box", "Fragile", "First-Class", "26", "75"},
+                new String[]{"9379a", "Tube", "N/A", "Retail", "3", "4"});
+
+        ImportResult result = shippingStore.importOrders(records.iterator(), 2);
+        assertEquals(2, result.getAcceptedCount());
+        assertEquals(4, result.getRejects().size());
+        ImportResult.Reject reject = result.getRejects().get(0);
+        assertEquals(1, reject.getRecordNumber());
+        assertEquals("bxf24", reject.getTrackingNumber());
+        assertTrue(reject.getReason().startsWith("Package Order already exists"));
+        assertTrue(result.getRejects().get(1).getReason().startsWith("Not correct number of fields"));
+        assertTrue(result.getRejects().get(2).getReason().startsWith("The weight of package cannot be negative"));
+        assertEquals(5, result.getRejects().get(3).getRecordNumber());
+
+        assertEquals(PackageType.BOX, shippingStore.getPackageOrder(shippingStore.findPackageOrder("9379A")).getPackageType());
+        assertEquals(PackageType.DRUM, shippingStore.getPackageOrder(shippingStore.findPackageOrder("BXF24")).getPackageType());
+        assertNotNull(shippingStore.getPackageOrder(shippingStore.findPackageOrder("12345")));
+        assertEquals(-1, shippingStore.findPackageOrder("ABC12"));
+    }
+
     /**
      * Tests if it is possible to add an order to the object list, and then verifies the size of the array.
      * @throws Exception type assertEquals verify's that the array size is the proper size once we added the extra item.
@@ -214,6 +526,115 @@ public class ShippingStoreTest {
         }
     }
 
+    /**
+     * Checks that reading a data file in parallel gives the same orders in the same
+     * positions as reading it on one thread, including skipped duplicates.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void readParallelMatchesRead() throws Exception {
+        File file = File.createTempFile("packageorders", ".txt");
+        try {
+            String[] trackingNumbers = ShippingStoreBenchmark.writeOrders(file, 40000);
+            try (FileWriter writer = new FileWriter(file, true)) {
+                writer.write(trackingNumbers[7].toLowerCase() + " Box Books Retail 1.00 10\n");
+            }
+            assertTrue("File is mapped", file.length() >= PackageOrderParser.MAP_THRESHOLD);
+
+            ShippingStore sequential = new ShippingStore(file);
+            sequential.read(file);
+            ShippingStore parallel = new ShippingStore(file);
+            parallel.readParallel(file, 4);
+
+            for (int i = 0; i < trackingNumbers.length; i++) {
+                assertEquals(trackingNumbers[i], parallel.getPackageOrder(i).getTrackingNumber());
+                assertEquals(sequential.getPackageOrder(i).getWeight(),
+                        parallel.getPackageOrder(i).getWeight(), 0);
+            }
+            assertNull(parallel.getPackageOrder(trackingNumbers.length));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Checks that flushing to the data file writes every order as its text form and
+     * leaves no temporary file behind.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void flushToDataFile() throws Exception {
+        File dir = File.createTempFile("shippingstore", "");
+        dir.delete();
+        dir.mkdir();
+        File file = new File(dir, "PackageOrderDB.txt");
+        try {
+            ShippingStore store = new ShippingStore(file);
+            store.read(new StringReader("BXF24 Drum Fragile First-Class 7.00 83\n"
+                    + "12345 Crate Books Priority 0.125 91\n"
+                    + "ABC12 Envelope Catalogs Ground 3200.005 23\n"));
+            store.flush();
+
+            String expected = "";
+            for (int i = 0; i < 3; i++) {
+                expected += store.getPackageOrder(i).toString();
+            }
+            assertEquals(expected, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            assertEquals(1, dir.list().length);
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * Checks that orders added and removed with a log open are recovered from the log
+     * when the store is opened again without having been saved, and that a change cut
+     * short by a crash is dropped.
+     * @throws Exception The exception is being returned as the assert equals functions.
+     */
+    @Test
+    public void openLogReplaysChanges() throws Exception {
+        File dir = File.createTempFile("shippingstore", "");
+        dir.delete();
+        dir.mkdir();
+        File file = new File(dir, "PackageOrderDB.txt");
+        File logFile = new File(dir, "PackageOrderDB.log");
+        try {
+            ShippingStore store = new ShippingStore(file);
+            store.read(new StringReader("BXF24 Drum Fragile First-Class 7.00 83\n"));
+            store.flush();
+            store.openLog(logFile);
+            store.addOrder("12345", "Crate", "Books", "Priority", "6.00", "91");
+            store.addOrder("ABC12", "Envelope", "Catalogs", "Ground", "2.50", "23");
+            store.removeOrder("BXF24");
+            try (FileWriter writer = new FileWriter(logFile, true)) {
+                writer.write("A 9379A Box Fragile");
+            }
+
+            ShippingStore reopened = new ShippingStore(file);
+            reopened.read(file);
+            reopened.openLog(logFile);
+            assertEquals(-1, reopened.findPackageOrder("BXF24"));
+            assertEquals(-1, reopened.findPackageOrder("9379A"));
+            assertEquals(2.5f, reopened.getPackageOrder(reopened.findPackageOrder("ABC12")).getWeight(), 0);
+            assertNotNull(reopened.getPackageOrder(reopened.findPackageOrder("12345")));
+
+            reopened.closeLog();
+            assertEquals(0, logFile.length());
+            ShippingStore saved = new ShippingStore(file);
+            saved.read(file);
+            assertEquals(2, saved.countPackageOrdersRange(0, 100));
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
     /**
      * Verifies if there were any errors in writing to the serializable objects. Tests to see if the
      * test file could be read.
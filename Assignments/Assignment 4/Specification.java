@@ -0,0 +1,60 @@
+package shippingstore;
+
+import java.util.HashMap;
+
+/**
+ * This enum represents the specification of a package order. Each value has
+ * the label that is used for it in the data file and on the console.
+ *
+ */
+public enum Specification {
+
+    FRAGILE("Fragile"),
+    BOOKS("Books"),
+    CATALOGS("Catalogs"),
+    DO_NOT_BEND("Do-not-Bend"),
+    NOT_APPLICABLE("N/A");
+
+    private static final HashMap<String, Specification> BY_LABEL = new HashMap<>();
+
+    static {
+        for (Specification value : values()) {
+            BY_LABEL.put(value.label, value);
+        }
+    }
+
+    private final String label;
+
+    Specification(String label) {
+        this.label = label;
+    }
+
+    /**
+     * This method returns the label of the specification.
+     *
+     * @return a <b><CODE>String</CODE></b> that is the label, such as "Fragile".
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * This method returns the specification with the given label. Labels are case
+     * sensitive, except "N/A", which may be written in any case.
+     *
+     * @param label the label to look up.
+     * @return the <CODE>Specification</CODE> with that label, or null if there is none.
+     */
+    public static Specification fromLabel(String label) {
+        Specification value = BY_LABEL.get(label);
+        if (value == null && NOT_APPLICABLE.label.equalsIgnoreCase(label)) {
+            return NOT_APPLICABLE;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
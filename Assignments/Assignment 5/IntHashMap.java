@@ -0,0 +1,115 @@
+/*
+ * Shipping Store Management Software v0.1
+ * Developed for CS3354: Object Oriented Design and Programming.
+ */
+
+package shippingstore;
+
+/**
+ * IntHashMap is a hash map with primitive int keys, so that looking up a value
+ * does not box the key into an Integer. Keys are kept in an open-addressing
+ * table with linear probing. Null values are not allowed.
+ *
+ * @param <V> the type of the values
+ */
+public class IntHashMap<V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * Default constructor. Creates an empty map.
+     */
+    public IntHashMap() {
+        this.keys = new int[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Get the value of a key.
+     * @param key the key
+     * @return the value, or null if the map has no value for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the map has a value for the key.
+     * @param key the key
+     * @return true if the key is in the map
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Set the value of a key, replacing any value it had.
+     * @param key the key
+     * @param value the value, not null
+     * @return the value the key had before, or null if it had none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("IntHashMap does not allow null values");
+        }
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        // Keep the table at most half full so probe runs stay short
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of keys in the map.
+     * @return the number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = hash(oldKeys[j]) & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
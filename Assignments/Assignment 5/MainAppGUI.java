@@ -24,7 +24,7 @@ import java.util.logging.Logger;
  */
 public class MainAppGUI extends JFrame {
     
-    private static ShippingStore clone = ShippingStore.readDatabase(), ss = (clone == null) ?
+    private static ShippingStore clone = ShippingStore.readDatabase(true), ss = (clone == null) ?
             new ShippingStore() : clone;
     private static final Logger logger = Logger.getLogger(MainAppGUI.class.getName());
     private static FileHandler fh;
@@ -771,16 +771,15 @@ public class MainAppGUI extends JFrame {
 
                     sub_submit.addActionListener(new ActionListener() {
                         public void actionPerformed (ActionEvent x) {
-                            temp.setFirstName(firstname.getText());
-                            temp.setLastName(lastname.getText());
                             if (temp instanceof Customer) {
-                                ((Customer)temp).setPhoneNumber(phoneNumb.getText());
-                                ((Customer)temp).setAddress((addTF.getText()));
+                                ss.updateCustomer(temp.getId(), firstname.getText(), lastname.getText(),
+                                        phoneNumb.getText(), addTF.getText());
                             }
                             else {
-                                ((Employee)temp).setMonthlySalary(Float.parseFloat(salaryTF.getText()));
-                                ((Employee)temp).setBankAccountNumber(Integer.parseInt(bankTF.getText()));
-                                ((Employee)temp).setSocialSecurityNumber(Integer.parseInt(ssNumTF.getText()));
+                                ss.updateEmployee(temp.getId(), firstname.getText(), lastname.getText(),
+                                        Integer.parseInt(ssNumTF.getText()),
+                                        Float.parseFloat(salaryTF.getText()),
+                                        Integer.parseInt(bankTF.getText()));
                             }
                             JOptionPane.showMessageDialog(frame, "User has been successfully updated!", "Success!",
                                     JOptionPane.INFORMATION_MESSAGE);
@@ -1004,6 +1003,7 @@ public class MainAppGUI extends JFrame {
      * terminateSession() will write the database as a serialized object then exit the GUI main menu/program.
      */
     public void terminateSession() {
+        ss.stopCheckpoints();
         ss.writeDatabase();
         logger.log(Level.INFO, "User has closed the program via 'Exit' in main menu, exit successful!");
         System.exit(0);
@@ -2397,6 +2397,7 @@ public class MainAppGUI extends JFrame {
      */
     @SuppressWarnings("unchecked")
     public static void main(String[] args) {
+        ss.startCheckpoints(ShippingStore.CHECKPOINT_PERIOD_SECONDS);
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
                 MainAppGUI exe = new MainAppGUI("ShippingStore Management Application v1.0");
@@ -3,7 +3,6 @@ package shippingstore;
 import java.io.*;
 import java.util.*;
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -12,15 +11,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class represents a package shippingstore software
@@ -35,6 +39,29 @@ import java.util.Scanner;
  * 8. Deliver a package.
  * 9. Show a list of transactions.
  * 10. Exit program.
+ *
+ * Packages are indexed by tracking number, ignoring case, and users by ID, so
+ * finding, adding and deleting them takes constant time. A deleted package is
+ * replaced in the list by the last package. The indexes expect tracking numbers
+ * and user IDs not to be changed while the package or user is in the store.
+ *
+ * The database is saved in the directory ShippingStore.db as three segments:
+ * the packages, the users and a log of the transactions. A segment is only
+ * written again when it has changed since it was last read or saved, and new
+ * transactions are appended to the log, so saving after a package is delivered
+ * takes time in proportion to the change rather than to the database. Users
+ * must therefore be changed through updateCustomer() and updateEmployee().
+ *
+ * The database can also be saved in the background by checkpoints. A checkpoint
+ * locks the store only to copy the lists that changed, and then writes the copy
+ * while the store is used. So that the copy stays as it was, packages and
+ * transactions are never changed once added and an updated user replaces the
+ * old User object. The methods that change the store are synchronized with the
+ * copy; the store is otherwise used from one thread.
+ *
+ * The transactions only grow, so the GUI reads the database with
+ * readDatabase(true), which reads a transaction from the log only when it is
+ * used.
  */
 public class ShippingStore {
 
@@ -42,8 +69,40 @@ public class ShippingStore {
     private final List<User> users;
     private final List<Transaction> transactions;
 
+    // Upper case tracking number to the position of a package with it in packageList
+    private final HashMap<String, Integer> packageIndex = new HashMap<>();
+    // Upper case tracking number to the number of other packages with it, for
+    // tracking numbers that more than one package has
+    private final HashMap<String, Integer> duplicatePackages = new HashMap<>();
+    private final IntHashMap<User> userIndex = new IntHashMap<>();
+
     protected int userIdCounter = 1;
     private final Scanner sc;
+
+    // Which segments differ from the files in DATABASE_DIR, and how many
+    // transactions the log there holds; 0 means the log is written anew
+    private boolean packagesChanged = true;
+    private boolean usersChanged = true;
+    private int transactionsSaved;
+
+    private static final File DATABASE_DIR = new File("ShippingStore.db");
+    private static final String PACKAGE_SEGMENT = "packages.seg";
+    private static final String USER_SEGMENT = "users.seg";
+    private static final String TRANSACTION_LOG = "transactions.log";
+
+    /**
+     * The number of seconds between background checkpoints of the menu and
+     * the GUI.
+     */
+    public static final long CHECKPOINT_PERIOD_SECONDS = 30;
+
+    // Held while a snapshot is written, so that snapshots are written in order
+    private final Object saveLock = new Object();
+    // True once DATABASE_DIR has been read into this store or written by it.
+    // Checkpoints never write to a DATABASE_DIR the store does not own, so a
+    // store made because the database could not be read does not replace it.
+    private volatile boolean ownsDatabase;
+    private ScheduledExecutorService checkpointer;
      
     /**
      * Default constructor. Initializes the package list, users, and transactions
@@ -68,6 +127,13 @@ public class ShippingStore {
         this.users = users;
         this.transactions = transactions;
         this.sc = new Scanner(System.in);
+
+        for (int i = 0; i < packageList.size(); i++) {
+            indexPackage(packageList.get(i), i);
+        }
+        for (User u : users) {
+            userIndex.put(u.getId(), u);
+        }
     }
 
     /**
@@ -75,24 +141,115 @@ public class ShippingStore {
      * 
      * @param Counter
      */
-    public void setUserIdCounter(int Counter) {
+    public synchronized void setUserIdCounter(int Counter) {
         this.userIdCounter = Counter;
+        usersChanged = true;
     }
     
     /**
      * Auxiliary method used to find a package in the database, given its
-     * tracking number.
+     * tracking number. Tracking numbers that differ only in case match.
      *
      * @param ptn
      * @return The package found, or otherwise null.
      */
     public Package findPackage(String ptn) {
-        for (Package p : packageList) {
-            if (p.getPtn().equals(ptn)) {
-                return p;
+        int i = packagePositionOf(ptn);
+        return i == -1 ? null : packageList.get(i);
+    }
+
+    /**
+     * Auxiliary private method to find the position of a package in packageList,
+     * given its tracking number, ignoring case.
+     *
+     * @param ptn
+     * @return The position of the package, or -1 if there is none.
+     */
+    private int packagePositionOf(String ptn) {
+        if (ptn == null) {
+            return -1;
+        }
+        Integer i = packageIndex.get(packageKey(ptn));
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Auxiliary private method that returns the key of a tracking number in
+     * packageIndex.
+     */
+    private static String packageKey(String ptn) {
+        return ptn.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Auxiliary private method that adds a package to packageList and packageIndex.
+     *
+     * @param p
+     * @return true, as packageList.add(p) does.
+     */
+    private synchronized boolean addPackage(Package p) {
+        indexPackage(p, packageList.size());
+        packagesChanged = true;
+        return packageList.add(p);
+    }
+
+    /**
+     * Auxiliary private method that adds a package at a position of packageList
+     * to packageIndex, or counts it in duplicatePackages if another package has
+     * its tracking number.
+     *
+     * @param p
+     * @param i
+     */
+    private void indexPackage(Package p, int i) {
+        String key = packageKey(p.getPtn());
+        if (packageIndex.putIfAbsent(key, i) != null) {
+            duplicatePackages.merge(key, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Auxiliary private method that removes the package at a position of
+     * packageList, moving the last package into its place.
+     *
+     * @param i
+     */
+    private synchronized void removePackageAt(int i) {
+        String key = packageKey(packageList.get(i).getPtn());
+        Integer others = duplicatePackages.get(key);
+        boolean indexed = packageIndex.get(key) == i;
+        if (others == null) {
+            packageIndex.remove(key);
+        } else {
+            if (others == 1) {
+                duplicatePackages.remove(key);
+            } else {
+                duplicatePackages.put(key, others - 1);
+            }
+            if (indexed) {
+                packageIndex.remove(key);
+            }
+        }
+        packagesChanged = true;
+        int last = packageList.size() - 1;
+        Package moved = packageList.remove(last);
+        if (i < last) {
+            packageList.set(i, moved);
+            String movedKey = packageKey(moved.getPtn());
+            Integer movedAt = packageIndex.get(movedKey);
+            if (movedAt != null && movedAt == last) {
+                packageIndex.put(movedKey, i);
+            }
+        }
+        if (others != null && indexed) {
+            // Another package has the same tracking number; index it instead
+            for (int j = 0; j < packageList.size(); j++) {
+                if (packageKey(packageList.get(j).getPtn()).equals(key)) {
+                    packageIndex.put(key, j);
+                    break;
+                }
             }
         }
-        return null;
     }
 
     /**
@@ -132,7 +289,7 @@ public class ShippingStore {
             float weight, int volume, int height, int width) {
         Envelope env = new Envelope(ptn, type, specification, mailingClass, weight, 
             volume, height, width);
-        packageList.add(env);
+        addPackage(env);
     }
     
     /**
@@ -150,7 +307,7 @@ public class ShippingStore {
             float weight, int volume, int dimension) {
         Box box = new Box(ptn, type, specification, mailingClass, weight, 
             volume, dimension);
-        packageList.add(box);
+        addPackage(box);
     }
     
     /**
@@ -170,7 +327,7 @@ public class ShippingStore {
             float weight, int volume, float loadWeight, String content) {
         Crate crate = new Crate(ptn, type, specification, mailingClass, weight, 
             volume, loadWeight, content);
-        packageList.add(crate);
+        addPackage(crate);
     }
     
     /**
@@ -188,7 +345,7 @@ public class ShippingStore {
     public void addDrum(String ptn, String type, String specification, String mailingClass, 
             float weight, int volume, String material, float diameter) {
         Drum drum = new Drum(ptn, type, specification, mailingClass, weight, volume, material, diameter);
-        packageList.add(drum);
+        addPackage(drum);
     }
     
     /**
@@ -204,7 +361,7 @@ public class ShippingStore {
     public void addOrder(String ptn, String type, String specification, String mailingClass, 
             float weight, int volume) {
         Package package1 = new Package(ptn, type, specification, mailingClass, weight, volume);
-        packageList.add(package1);
+        addPackage(package1);
     }
     
 
@@ -215,14 +372,12 @@ public class ShippingStore {
      * @return True if the package was found and was deleted. False otherwise.
      */
     public boolean deletePackage(String ptn) {
-        
-        for (Package p : packageList) {
-            if (p.getPtn().equals(ptn)) {
-                packageList.remove(p);
-                return true;
-            }
+        int i = packagePositionOf(ptn);
+        if (i == -1) {
+            return false;
         }
-        return false;
+        removePackageAt(i);
+        return true;
     }
     
 
@@ -280,15 +435,8 @@ public class ShippingStore {
      * @return packageList.size(), an int
      */
     public int basicSearch(String search) {
-        int x = 0;
-
-        for (Package i : packageList) {
-            if (i.getPtn().equalsIgnoreCase(search)) {
-                return x;
-            }
-            ++x;
-        }
-        return packageList.size();
+        int i = packagePositionOf(search);
+        return i == -1 ? packageList.size() : i;
     }
     
     /**
@@ -296,7 +444,9 @@ public class ShippingStore {
      * @param obj of User datatype
      * @return true if users.add(obj) is successful, false otherwise
      */
-    public boolean addUserDirectly(User obj) {
+    public synchronized boolean addUserDirectly(User obj) {
+        userIndex.put(obj.getId(), obj);
+        usersChanged = true;
         return users.add(obj);
     }
     
@@ -305,7 +455,7 @@ public class ShippingStore {
      * @return boolean, packageList.add(obj)
      */
     public boolean addPackageDirectly(Package obj) {
-        return packageList.add(obj);
+        return addPackage(obj);
     }
     
     /**
@@ -316,8 +466,8 @@ public class ShippingStore {
      * @param phoneNumber
      * @param address
      */
-    public void addCustomer(String firstName, String lastName, String phoneNumber, String address) {
-        users.add(new Customer(userIdCounter++, firstName, lastName, phoneNumber, address));
+    public synchronized void addCustomer(String firstName, String lastName, String phoneNumber, String address) {
+        addUserDirectly(new Customer(userIdCounter++, firstName, lastName, phoneNumber, address));
     }
     
     /**
@@ -329,8 +479,8 @@ public class ShippingStore {
      * @param monthlySalary
      * @param bankAccNumber
      */
-    public void addEmployee(String firstName, String lastName, int ssn, float monthlySalary, int bankAccNumber) {
-        users.add(new Employee(userIdCounter++, firstName, lastName, ssn, monthlySalary, bankAccNumber));
+    public synchronized void addEmployee(String firstName, String lastName, int ssn, float monthlySalary, int bankAccNumber) {
+        addUserDirectly(new Employee(userIdCounter++, firstName, lastName, ssn, monthlySalary, bankAccNumber));
     }
     
     /**
@@ -384,15 +534,7 @@ public class ShippingStore {
      * @return
      */
     public User findUser(int userID) {
-        User user = null;
-        
-        for (User u : users) {
-            if (u.getId() == userID) {
-                user = u;
-            }
-        }
-        
-        return user;
+        return userIndex.get(userID);
     }
     
     /**
@@ -427,17 +569,14 @@ public class ShippingStore {
      * @param phoneNumber
      * @param address
      */
-    public void updateCustomer(int userID, String firstName, String lastName,
+    public synchronized void updateCustomer(int userID, String firstName, String lastName,
             String phoneNumber, String address) {
         Customer customer = (Customer) findUser(userID);
         if (customer == null) {
             System.err.println("Customer not found!");
             return;
         }
-        customer.setFirstName(firstName);
-        customer.setLastName(lastName);
-        customer.setPhoneNumber(phoneNumber);
-        customer.setAddress(address);
+        replaceUser(customer, new Customer(userID, firstName, lastName, phoneNumber, address));
     }
     
     /**
@@ -449,18 +588,28 @@ public class ShippingStore {
      * @param monthlySalary
      * @param bankAccNumber
      */
-    public void updateEmployee(int userID, String firstName, String lastName,
+    public synchronized void updateEmployee(int userID, String firstName, String lastName,
             int ssn, float monthlySalary, int bankAccNumber) {
         Employee employee = (Employee) findUser(userID);
         if (employee == null) {
             System.err.println("Employee not found!");
             return;
         }
-        employee.setFirstName(firstName);
-        employee.setLastName(lastName);
-        employee.setSocialSecurityNumber(ssn);
-        employee.setMonthlySalary(monthlySalary);
-        employee.setBankAccountNumber(bankAccNumber);
+        replaceUser(employee, new Employee(userID, firstName, lastName, ssn, monthlySalary, bankAccNumber));
+    }
+
+    /**
+     * Auxiliary private method that puts an updated copy of a user in the place
+     * of the user in users and userIndex, so that a snapshot taken before keeps
+     * the old values.
+     *
+     * @param old
+     * @param updated
+     */
+    private void replaceUser(User old, User updated) {
+        users.set(users.indexOf(old), updated);
+        userIndex.put(updated.getId(), updated);
+        usersChanged = true;
     }
 
     /**
@@ -472,7 +621,7 @@ public class ShippingStore {
      * @param deliveryDate
      * @param price
      */
-    public void addShppingTransaction(int customerId, int employeeId, String ptn,
+    public synchronized void addShppingTransaction(int customerId, int employeeId, String ptn,
                        Date shippingDate, Date deliveryDate, float price) {
         Transaction trans = new Transaction(customerId, employeeId, ptn, shippingDate, deliveryDate, price);
         transactions.add(trans);
@@ -483,7 +632,7 @@ public class ShippingStore {
      * @param obj transaction
      * @return transactions.add(obj);
      */
-    public boolean addTransactionGUI(Transaction obj) {
+    public synchronized boolean addTransactionGUI(Transaction obj) {
         return transactions.add(obj);
     }
     
@@ -511,13 +660,7 @@ public class ShippingStore {
      * @return true if search matched a PTN, false otherwise
      */
     public boolean deletePackageByStr(String search) {
-        for (Package i : packageList) {
-            if (i.getPtn().equalsIgnoreCase(search)) {
-                packageList.remove(i);
-                return true;
-            }
-        }
-        return false;
+        return deletePackage(search);
     }
     
 
@@ -527,25 +670,50 @@ public class ShippingStore {
      * @return transactions
      */
     public String getAllTransactionsText() {
-        String transText = "";
+        StringBuilder transText = new StringBuilder();
         for (Transaction trans : transactions) {
-            transText += trans.toString();
+            transText.append(trans.toString());
         }
-        return transText;
+        return transText.toString();
     }
 
 
     /**
-     * This method is used to read the database from a file, serializable
-     * objects.
+     * This method is used to read the database from the segments in
+     * ShippingStore.db. If there are none, it reads the single file
+     * ShippingStore.ser written by an older version, either by
+     * ShippingStoreCodec or, if it starts with the ObjectOutputStream header, as
+     * serializable objects.
+     *
+     * @return A new ShippingStore object.
+     */
+    public static ShippingStore readDatabase() {
+        return readDatabase(false);
+    }
+
+    /**
+     * This method is used to read the database as readDatabase() does, but
+     * if lazyTransactions is true, the transactions in ShippingStore.db are not
+     * read when the database is: the log is mapped into memory as a
+     * TransactionLog and a page of transactions is only read when one of them
+     * is asked for, by getTransactionAtPosition() or getAllTransactionsText().
+     * The time to read the database then does not grow with the number of
+     * transactions.
      *
+     * @param lazyTransactions true to read the transactions when they are used
      * @return A new ShippingStore object.
      */
     @SuppressWarnings("unchecked") // This will prevent Java unchecked operation warning when
     // convering from serialized Object to Arraylist<>
-    public static ShippingStore readDatabase() {
+    public static ShippingStore readDatabase(boolean lazyTransactions) {
         System.out.print("Reading database...");
         
+        if (DATABASE_DIR.isDirectory()) {
+            ShippingStore ss = readSegments(lazyTransactions);
+            System.out.println("Done.");
+            return ss;
+        }
+
         File dataFile = new File("ShippingStore.ser");
         
         ShippingStore ss = null;
@@ -561,17 +729,25 @@ public class ShippingStore {
                 return ss;
             }
             file = new FileInputStream(dataFile);
-            buffer = new BufferedInputStream(file);
-            input = new ObjectInputStream(buffer);
+            buffer = new BufferedInputStream(file, 1 << 16);
+
+            buffer.mark(2);
+            int header = (buffer.read() << 8) | buffer.read();
+            buffer.reset();
+            if (header != ShippingStoreCodec.SERIALIZATION_MAGIC) {
+                ss = ShippingStoreCodec.read(buffer);
+            } else {
+                input = new ObjectInputStream(buffer);
 
-            // Read serilized data
-            List<Package> packageList = (ArrayList<Package>) input.readObject();
-            List<User> users = (ArrayList<User>) input.readObject();
-            List<Transaction> transactions = (ArrayList<Transaction>) input.readObject();
-            ss = new ShippingStore(packageList, users, transactions);
-            ss.userIdCounter = input.readInt();
+                // Read serilized data
+                List<Package> packageList = (ArrayList<Package>) input.readObject();
+                List<User> users = (ArrayList<User>) input.readObject();
+                List<Transaction> transactions = (ArrayList<Transaction>) input.readObject();
+                ss = new ShippingStore(packageList, users, transactions);
+                ss.userIdCounter = input.readInt();
 
-            input.close();
+                input.close();
+            }
         } catch (ClassNotFoundException ex) {
             System.err.println(ex.toString());
         } catch (FileNotFoundException ex) {
@@ -587,41 +763,322 @@ public class ShippingStore {
     }
 
     /**
-     * This method is used to save the Dealership database as a serializable
-     * object.
+     * Auxiliary private method that reads the segments in DATABASE_DIR. A
+     * transaction cut short at the end of the log is left out, and the log is
+     * written anew when the database is next saved.
+     *
+     * @param lazyTransactions true to open the log as a TransactionLog
+     * @return A new ShippingStore object, or null if a segment cannot be read.
      */
-    public void writeDatabase() {
-        System.out.print("Writing database...");
-        //serialize the database
-        OutputStream file = null;
-        OutputStream buffer = null;
-        ObjectOutput output = null;
+    private static ShippingStore readSegments(boolean lazyTransactions) {
+        InputStream file = null;
         try {
-            file = new FileOutputStream("ShippingStore.ser");
-            buffer = new BufferedOutputStream(file);
-            output = new ObjectOutputStream(buffer);
-
-            output.writeObject(packageList);
-            output.writeObject(users);
-            output.writeObject(transactions);
-            output.writeInt(userIdCounter);
+            file = new FileInputStream(new File(DATABASE_DIR, PACKAGE_SEGMENT));
+            List<Package> packageList = ShippingStoreCodec.readPackageSegment(file);
+            file.close();
+
+            List<User> users = new ArrayList<User>();
+            file = new FileInputStream(new File(DATABASE_DIR, USER_SEGMENT));
+            int counter = ShippingStoreCodec.readUserSegment(file, users);
+            file.close();
+
+            List<Transaction> transactions;
+            boolean whole;
+            if (lazyTransactions) {
+                TransactionLog log = TransactionLog.open(new File(DATABASE_DIR, TRANSACTION_LOG));
+                transactions = log;
+                whole = log.isWhole();
+            } else {
+                transactions = new ArrayList<Transaction>();
+                file = new FileInputStream(new File(DATABASE_DIR, TRANSACTION_LOG));
+                whole = ShippingStoreCodec.readTransactionLog(file, transactions);
+            }
 
-            output.close();
+            ShippingStore ss = new ShippingStore(packageList, users, transactions);
+            ss.userIdCounter = counter;
+            ss.packagesChanged = false;
+            ss.usersChanged = false;
+            ss.transactionsSaved = whole ? transactions.size() : 0;
+            ss.ownsDatabase = true;
+            return ss;
         } catch (IOException ex) {
             System.err.println(ex.toString());
+            return null;
         } finally {
             close(file);
         }
+    }
+
+    /**
+     * This method is used to save the Dealership database as segments in
+     * ShippingStore.db, in the binary format of ShippingStoreCodec, as
+     * checkpoint() does, printing its progress.
+     *
+     * @return true if the database was saved, false if it could not be.
+     */
+    public boolean writeDatabase() {
+        System.out.print("Writing database...");
+        try {
+            saveSnapshot();
+        } catch (IOException ex) {
+            System.err.println(ex.toString());
+            return false;
+        }
         System.out.println("Done.");
+        return true;
     }
-    
-    public boolean packageMatch(String ptn) {
-        for (Package i : packageList) {
-            if (i.getPtn().equalsIgnoreCase(ptn)) {
+
+    /**
+     * Saves the changes to the database since it was last read or saved. Only
+     * the segments that changed are written, each to a temporary file that is
+     * forced to disk and then replaces the old one, and new transactions are
+     * appended to the log, so a crash leaves each segment either as it was or
+     * as it is now. The first time, all the segments are written to a
+     * temporary directory that then becomes ShippingStore.db.
+     *
+     * Nothing is saved if ShippingStore.db exists but was not read into this
+     * store, as when it could not be read; only writeDatabase() replaces it.
+     *
+     * @return true if the changes were saved, false if they could not be, in
+     * which case they are saved by the next checkpoint.
+     */
+    public boolean checkpoint() {
+        synchronized (saveLock) {
+            if (!ownsDatabase && DATABASE_DIR.isDirectory()) {
+                return false;
+            }
+            try {
+                saveSnapshot();
                 return true;
+            } catch (IOException | RuntimeException ex) {
+                System.err.println("Checkpoint failed: " + ex);
+                return false;
             }
         }
-        return false;
+    }
+
+    /**
+     * Starts saving the database with checkpoint() in the background, on a
+     * daemon thread, so that saving does not hold up the menu or the GUI.
+     * They are not started if ShippingStore.db exists but was not read into
+     * this store.
+     *
+     * @param periodSeconds the number of seconds between checkpoints
+     */
+    public synchronized void startCheckpoints(long periodSeconds) {
+        if (checkpointer != null) {
+            return;
+        }
+        if (!ownsDatabase && DATABASE_DIR.isDirectory()) {
+            System.err.println("Checkpoints are off, since " + DATABASE_DIR + " was not read.");
+            return;
+        }
+        checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "ShippingStore checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpoint, periodSeconds, periodSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the checkpoints started by startCheckpoints(), waiting for one that
+     * is being saved to finish.
+     */
+    public void stopCheckpoints() {
+        ScheduledExecutorService stopped;
+        synchronized (this) {
+            stopped = checkpointer;
+            checkpointer = null;
+        }
+        if (stopped == null) {
+            return;
+        }
+        stopped.shutdown();
+        try {
+            stopped.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The parts of the database to save, copied from the store so that they
+     * can be written while the store keeps changing. Packages, users and
+     * transactions are not changed once they are in the store, so copying the
+     * lists is enough. A list is null if it has not changed.
+     */
+    private static class Snapshot {
+        boolean created;
+        List<Package> packageList;
+        List<User> users;
+        int userIdCounter;
+        // The transactions from position transactionsFrom of the log on
+        int transactionsFrom;
+        List<Transaction> transactions;
+        int transactionCount;
+    }
+
+    /**
+     * Auxiliary private method that takes a snapshot and writes it, one
+     * snapshot at a time. If it cannot be written, the segments in it are
+     * written by the next one.
+     *
+     * @throws IOException if the snapshot cannot be written.
+     */
+    private void saveSnapshot() throws IOException {
+        synchronized (saveLock) {
+            Snapshot snapshot = takeSnapshot();
+            try {
+                writeSnapshot(snapshot);
+            } catch (IOException | RuntimeException ex) {
+                restoreChanges(snapshot);
+                throw ex;
+            }
+            transactionsSaved = snapshot.transactionCount;
+            ownsDatabase = true;
+        }
+    }
+
+    /**
+     * Auxiliary private method that copies the parts of the store that have
+     * changed. The store is locked only while the lists are copied.
+     */
+    private synchronized Snapshot takeSnapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.created = !DATABASE_DIR.isDirectory();
+        if (packagesChanged || snapshot.created) {
+            snapshot.packageList = new ArrayList<Package>(packageList);
+            packagesChanged = false;
+        }
+        if (usersChanged || snapshot.created) {
+            snapshot.users = new ArrayList<User>(users);
+            snapshot.userIdCounter = userIdCounter;
+            usersChanged = false;
+        }
+        snapshot.transactionsFrom = snapshot.created ? 0 : transactionsSaved;
+        snapshot.transactions = new ArrayList<Transaction>(
+                transactions.subList(snapshot.transactionsFrom, transactions.size()));
+        snapshot.transactionCount = transactions.size();
+        return snapshot;
+    }
+
+    /**
+     * Auxiliary private method that marks the segments of a snapshot that
+     * could not be written as changed again. The log may have been appended
+     * to in part, so it is written anew.
+     */
+    private synchronized void restoreChanges(Snapshot snapshot) {
+        if (snapshot.packageList != null) {
+            packagesChanged = true;
+        }
+        if (snapshot.users != null) {
+            usersChanged = true;
+        }
+        transactionsSaved = 0;
+    }
+
+    /**
+     * Auxiliary private method that writes a snapshot to DATABASE_DIR.
+     *
+     * @throws IOException if a segment cannot be written.
+     */
+    private static void writeSnapshot(Snapshot snapshot) throws IOException {
+        File dir = snapshot.created ? new File(DATABASE_DIR.getPath() + ".tmp") : DATABASE_DIR;
+        if (snapshot.created && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        boolean replaced = false;
+        if (snapshot.packageList != null) {
+            writeSegment(new File(dir, PACKAGE_SEGMENT),
+                    out -> ShippingStoreCodec.writePackageSegment(out, snapshot.packageList));
+            replaced = true;
+        }
+        if (snapshot.users != null) {
+            writeSegment(new File(dir, USER_SEGMENT),
+                    out -> ShippingStoreCodec.writeUserSegment(out, snapshot.users, snapshot.userIdCounter));
+            replaced = true;
+        }
+
+        File log = new File(dir, TRANSACTION_LOG);
+        if (snapshot.transactionsFrom == 0) {
+            // An index of the old log must not be read with the new one
+            TransactionLog.deleteIndex(log);
+            writeSegment(log, out -> {
+                ShippingStoreCodec.writeTransactionLogHeader(out);
+                ShippingStoreCodec.appendTransactions(out, snapshot.transactions, 0);
+            });
+            replaced = true;
+        } else if (!snapshot.transactions.isEmpty()) {
+            FileOutputStream file = new FileOutputStream(log, true);
+            try {
+                ShippingStoreCodec.appendTransactions(file, snapshot.transactions, 0);
+                file.getFD().sync();
+            } finally {
+                close(file);
+            }
+        }
+        if (snapshot.transactionsFrom == 0 || !snapshot.transactions.isEmpty()) {
+            TransactionLog.updateIndex(log);
+        }
+
+        if (replaced) {
+            syncDirectory(dir);
+        }
+        if (snapshot.created) {
+            Files.move(dir.toPath(), DATABASE_DIR.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(DATABASE_DIR.getAbsoluteFile().getParentFile());
+        }
+    }
+
+    /**
+     * Writes a segment of the database.
+     */
+    private interface SegmentWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Auxiliary private method that writes a segment to a temporary file,
+     * forces it to disk and then moves it in place of the file, so that the
+     * file holds either the old segment or the new one.
+     *
+     * @param file
+     * @param writer
+     * @throws IOException if the segment cannot be written.
+     */
+    private static void writeSegment(File file, SegmentWriter writer) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            writer.write(out);
+            out.getFD().sync();
+        } finally {
+            close(out);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Auxiliary private method that forces the entries of a directory to disk,
+     * so that a file moved into it is still there after a crash. Not every
+     * platform can open a directory, so this is only attempted.
+     *
+     * @param dir
+     */
+    private static void syncDirectory(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // The files themselves have been forced to disk
+        }
+    }
+    
+    public boolean packageMatch(String ptn) {
+        return packagePositionOf(ptn) != -1;
     }
 
     /**
@@ -649,6 +1106,7 @@ public class ShippingStore {
    public void runSoftware() {
        int choice = 0;
        boolean exitProgram = false;
+       startCheckpoints(CHECKPOINT_PERIOD_SECONDS);
        do {
            printMenu();
            try {
@@ -664,7 +1122,7 @@ public class ShippingStore {
                    case 7: updateUser(); break;
                    case 8: deliverPackage(); break;
                    case 9: showAllTransactions(); break;
-                   case 10: writeDatabase(); exitProgram = true; break; 
+                   case 10: stopCheckpoints(); writeDatabase(); exitProgram = true; break; 
                    default: System.err.println("Please select a number between 1 and 10.");
                }
            } catch (InputMismatchException ex) {
@@ -0,0 +1,852 @@
+/*
+ * Shipping Store Management Software v0.1
+ * Developed for CS3354: Object Oriented Design and Programming.
+ */
+
+package shippingstore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * ShippingStoreCodec reads and writes the shipping store database in a compact
+ * binary format, in place of Java serialization. The format is:
+ *
+ * Header: int magic "SSDB", short version and int userIdCounter, big-endian.
+ * Then the packages, the users and the transactions, each as a count followed
+ * by that many records.
+ *
+ * A record is a byte type tag, a length and then that many bytes of fields.
+ * Counts, lengths and int fields are written as variable-length integers of 7
+ * bits a byte (ints zigzag encoded, so small negative numbers stay short),
+ * floats as 4 big-endian bytes, dates as a variable-length time in
+ * milliseconds, and strings as their UTF-8 length plus one followed by the bytes
+ * (0 for null). The type, specification, mailing class, content and material of
+ * a package are labels, which repeat: each new label is numbered the first time
+ * it is written and later written as its number. The fields of a Box, Crate,
+ * Drum or Envelope follow the fields of a Package, and those of a Customer or
+ * Employee follow the fields of a User. A reader skips any bytes of a record
+ * after the fields it knows, so fields can be added at the end of a record in a
+ * later version.
+ *
+ * The same records are also written as separate segments, so that one part of
+ * the database can be saved without the others. A segment starts with the magic,
+ * the version and a short kind. A package segment then holds a count and the
+ * packages; a user segment the userIdCounter, a count and the users; and a
+ * transaction log the transactions up to the end of the file, so that new ones
+ * can be appended. Transactions have no labels, so each append can be read on
+ * its own.
+ */
+public class ShippingStoreCodec {
+
+    /**
+     * The first four bytes of a database file, "SSDB".
+     */
+    public static final int MAGIC = 0x53534442;
+
+    /**
+     * The first two bytes of a file written by ObjectOutputStream.
+     */
+    public static final int SERIALIZATION_MAGIC = 0xACED;
+
+    /**
+     * The version of the format that is written.
+     */
+    public static final short VERSION = 1;
+
+    static final byte TAG_PACKAGE = 1;
+    static final byte TAG_BOX = 2;
+    static final byte TAG_CRATE = 3;
+    static final byte TAG_DRUM = 4;
+    static final byte TAG_ENVELOPE = 5;
+    static final byte TAG_CUSTOMER = 16;
+    static final byte TAG_EMPLOYEE = 17;
+    static final byte TAG_TRANSACTION = 32;
+
+    /**
+     * The kinds of segment file, written after the version.
+     */
+    public static final byte SEGMENT_PACKAGES = 1;
+    public static final byte SEGMENT_USERS = 2;
+    public static final byte SEGMENT_TRANSACTIONS = 3;
+
+    /**
+     * The most labels that are numbered; any others are written in full.
+     */
+    private static final int MAX_LABELS = 4096;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int SEGMENT_HEADER_SIZE = 8;
+
+    private ShippingStoreCodec() {
+    }
+
+    /**
+     * Write a database to a stream. The stream is flushed but not closed.
+     *
+     * @param out the stream to write to
+     * @param packageList the packages
+     * @param users the users
+     * @param transactions the transactions
+     * @param userIdCounter the next user ID
+     * @throws IOException if the stream cannot be written
+     */
+    public static void write(OutputStream out, List<Package> packageList, List<User> users,
+            List<Transaction> transactions, int userIdCounter) throws IOException {
+        OutputStream output = buffered(out);
+        Encoder record = new Encoder();
+        record.putFixedInt(MAGIC);
+        record.putFixedShort(VERSION);
+        record.putFixedInt(userIdCounter);
+        writePackages(record, output, packageList);
+        writeUsers(record, output, users);
+        record.putVarInt(transactions.size());
+        record.writeTo(output);
+        writeTransactions(record, output, transactions, 0);
+        output.flush();
+    }
+
+    /**
+     * Read a database written by write().
+     *
+     * @param in the stream to read from
+     * @return a new ShippingStore with the packages, users, transactions and
+     * user ID counter that were written
+     * @throws IOException if the stream cannot be read or is not a valid
+     * database
+     */
+    public static ShippingStore read(InputStream in) throws IOException {
+        Decoder record = new Decoder(buffered(in));
+        readVersion(record);
+        int userIdCounter = record.readFixedInt();
+        List<Package> packageList = readPackages(record);
+        List<User> users = readUsers(record);
+        int count = record.readCount();
+        List<Transaction> transactions = new ArrayList<Transaction>(Math.min(count, BUFFER_SIZE));
+        for (int i = 0; i < count; i++) {
+            transactions.add(readTransaction(record, record.readRecord()));
+        }
+
+        ShippingStore store = new ShippingStore(packageList, users, transactions);
+        store.setUserIdCounter(userIdCounter);
+        return store;
+    }
+
+    /**
+     * Write a package segment: the header with the kind SEGMENT_PACKAGES, then
+     * the number of packages and a record for each. The stream is flushed but
+     * not closed.
+     *
+     * @param out the stream to write to
+     * @param packageList the packages
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writePackageSegment(OutputStream out, List<Package> packageList) throws IOException {
+        OutputStream output = buffered(out);
+        Encoder record = new Encoder();
+        writeSegmentHeader(record, SEGMENT_PACKAGES);
+        writePackages(record, output, packageList);
+        output.flush();
+    }
+
+    /**
+     * Read a package segment written by writePackageSegment().
+     *
+     * @param in the stream to read from
+     * @return the packages
+     * @throws IOException if the stream cannot be read or is not a package
+     * segment
+     */
+    public static List<Package> readPackageSegment(InputStream in) throws IOException {
+        Decoder record = new Decoder(buffered(in));
+        readSegmentHeader(record, SEGMENT_PACKAGES);
+        return readPackages(record);
+    }
+
+    /**
+     * Write a user segment: the header with the kind SEGMENT_USERS, the next
+     * user ID as an int, then the number of users and a record for each. The
+     * stream is flushed but not closed.
+     *
+     * @param out the stream to write to
+     * @param users the users
+     * @param userIdCounter the next user ID
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeUserSegment(OutputStream out, List<User> users, int userIdCounter)
+            throws IOException {
+        OutputStream output = buffered(out);
+        Encoder record = new Encoder();
+        writeSegmentHeader(record, SEGMENT_USERS);
+        record.putFixedInt(userIdCounter);
+        writeUsers(record, output, users);
+        output.flush();
+    }
+
+    /**
+     * Read a user segment written by writeUserSegment().
+     *
+     * @param in the stream to read from
+     * @param users the list to add the users to
+     * @return the next user ID
+     * @throws IOException if the stream cannot be read or is not a user segment
+     */
+    public static int readUserSegment(InputStream in, List<User> users) throws IOException {
+        Decoder record = new Decoder(buffered(in));
+        readSegmentHeader(record, SEGMENT_USERS);
+        int userIdCounter = record.readFixedInt();
+        users.addAll(readUsers(record));
+        return userIdCounter;
+    }
+
+    /**
+     * Write the header of a transaction log, which holds the transaction
+     * records that follow it up to the end of the file, with no count, so that
+     * records can be appended by appendTransactions(). The stream is flushed but
+     * not closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeTransactionLogHeader(OutputStream out) throws IOException {
+        Encoder record = new Encoder();
+        writeSegmentHeader(record, SEGMENT_TRANSACTIONS);
+        record.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Append records to a transaction log for the transactions from a given
+     * position to the end of a list. The stream is flushed but not closed.
+     *
+     * @param out the stream to write to, at the end of the log
+     * @param transactions the transactions
+     * @param from the position of the first transaction to write
+     * @throws IOException if the stream cannot be written
+     */
+    public static void appendTransactions(OutputStream out, List<Transaction> transactions, int from)
+            throws IOException {
+        OutputStream output = buffered(out);
+        writeTransactions(new Encoder(), output, transactions, from);
+        output.flush();
+    }
+
+    /**
+     * Read a transaction log written by writeTransactionLogHeader() and
+     * appendTransactions(). A record cut short at the end of the log, as an
+     * append that did not finish leaves it, is left out.
+     *
+     * @param in the stream to read from
+     * @param transactions the list to add the transactions to
+     * @return true if the log ended after a whole record, false if its last
+     * record was cut short
+     * @throws IOException if the stream cannot be read or is not a transaction
+     * log
+     */
+    public static boolean readTransactionLog(InputStream in, List<Transaction> transactions)
+            throws IOException {
+        Decoder record = new Decoder(buffered(in));
+        readSegmentHeader(record, SEGMENT_TRANSACTIONS);
+        try {
+            for (int tag = record.readRecordOrEnd(); tag != -1; tag = record.readRecordOrEnd()) {
+                transactions.add(readTransaction(record, (byte) tag));
+            }
+        } catch (EOFException ex) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check the header of a transaction log held in a buffer, such as a mapped
+     * file.
+     *
+     * @param log the buffer, from the start of the log to its limit
+     * @return the position of the first record
+     * @throws IOException if the buffer does not hold a transaction log
+     */
+    static int readTransactionLogHeader(ByteBuffer log) throws IOException {
+        readSegmentHeader(new Decoder(new ByteBufferInputStream(log, 0)), SEGMENT_TRANSACTIONS);
+        return SEGMENT_HEADER_SIZE;
+    }
+
+    /**
+     * Find the end of the transaction record at a position of a transaction
+     * log held in a buffer, without reading its fields.
+     *
+     * @param log the buffer, from the start of the log to its limit
+     * @param position the position of the record
+     * @return the position after the record, or -1 if there is no whole record
+     * at the position
+     * @throws IOException if the record is not a transaction
+     */
+    static int skipTransaction(ByteBuffer log, int position) throws IOException {
+        int limit = log.limit();
+        if (position >= limit) {
+            return -1;
+        }
+        byte tag = log.get(position++);
+        if (tag != TAG_TRANSACTION) {
+            throw new IOException("Unknown transaction type tag " + tag);
+        }
+        long size = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (position >= limit) {
+                return -1;
+            }
+            if (shift > 28) {
+                throw new IOException("Invalid record length in transaction log");
+            }
+            byte b = log.get(position++);
+            size |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return size > limit - position ? -1 : position + (int) size;
+    }
+
+    /**
+     * Read transaction records in a row from a transaction log held in a
+     * buffer.
+     *
+     * @param log the buffer, from the start of the log to its limit
+     * @param position the position of the first record
+     * @param count the number of records to read
+     * @return the transactions
+     * @throws IOException if the records are not valid transactions
+     */
+    static Transaction[] readTransactions(ByteBuffer log, int position, int count) throws IOException {
+        Decoder record = new Decoder(new ByteBufferInputStream(log, position));
+        Transaction[] transactions = new Transaction[count];
+        for (int i = 0; i < count; i++) {
+            transactions[i] = readTransaction(record, record.readRecord());
+        }
+        return transactions;
+    }
+
+    private static OutputStream buffered(OutputStream out) {
+        return out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    private static InputStream buffered(InputStream in) {
+        return in instanceof BufferedInputStream ? in : new BufferedInputStream(in, BUFFER_SIZE);
+    }
+
+    private static void readVersion(Decoder record) throws IOException {
+        if (record.readFixedInt() != MAGIC) {
+            throw new IOException("Not a shipping store database");
+        }
+        int version = record.readFixedShort();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported shipping store database version " + version);
+        }
+    }
+
+    private static void writeSegmentHeader(Encoder record, byte kind) {
+        record.putFixedInt(MAGIC);
+        record.putFixedShort(VERSION);
+        record.putFixedShort(kind);
+    }
+
+    private static void readSegmentHeader(Decoder record, byte kind) throws IOException {
+        readVersion(record);
+        int found = record.readFixedShort();
+        if (found != kind) {
+            throw new IOException("Not a shipping store segment of kind " + kind + ": " + found);
+        }
+    }
+
+    private static void writePackages(Encoder record, OutputStream out, List<Package> packageList)
+            throws IOException {
+        record.putVarInt(packageList.size());
+        record.writeTo(out);
+        for (Package p : packageList) {
+            writePackage(record, p);
+            record.writeRecord(out, packageTag(p));
+        }
+    }
+
+    private static List<Package> readPackages(Decoder record) throws IOException {
+        int count = record.readCount();
+        List<Package> packageList = new ArrayList<Package>(Math.min(count, BUFFER_SIZE));
+        for (int i = 0; i < count; i++) {
+            packageList.add(readPackage(record, record.readRecord()));
+        }
+        return packageList;
+    }
+
+    private static void writeUsers(Encoder record, OutputStream out, List<User> users) throws IOException {
+        record.putVarInt(users.size());
+        record.writeTo(out);
+        for (User u : users) {
+            writeUser(record, u);
+            record.writeRecord(out, u instanceof Employee ? TAG_EMPLOYEE : TAG_CUSTOMER);
+        }
+    }
+
+    private static List<User> readUsers(Decoder record) throws IOException {
+        int count = record.readCount();
+        List<User> users = new ArrayList<User>(Math.min(count, BUFFER_SIZE));
+        for (int i = 0; i < count; i++) {
+            users.add(readUser(record, record.readRecord()));
+        }
+        return users;
+    }
+
+    private static void writeTransactions(Encoder record, OutputStream out, List<Transaction> transactions,
+            int from) throws IOException {
+        for (int i = from; i < transactions.size(); i++) {
+            writeTransaction(record, transactions.get(i));
+            record.writeRecord(out, TAG_TRANSACTION);
+        }
+    }
+
+    private static byte packageTag(Package p) {
+        if (p instanceof Box) {
+            return TAG_BOX;
+        } else if (p instanceof Crate) {
+            return TAG_CRATE;
+        } else if (p instanceof Drum) {
+            return TAG_DRUM;
+        } else if (p instanceof Envelope) {
+            return TAG_ENVELOPE;
+        }
+        return TAG_PACKAGE;
+    }
+
+    private static void writePackage(Encoder out, Package p) {
+        out.putString(p.getPtn());
+        out.putLabel(p.getType());
+        out.putLabel(p.getSpecification());
+        out.putLabel(p.getMailingClass());
+        out.putFloat(p.getWeight());
+        out.putInt(p.getVolume());
+        if (p instanceof Box) {
+            out.putInt(((Box) p).getDimension());
+        } else if (p instanceof Crate) {
+            out.putFloat(((Crate) p).getLoadWeight());
+            out.putLabel(((Crate) p).getContent());
+        } else if (p instanceof Drum) {
+            out.putLabel(((Drum) p).getMaterial());
+            out.putFloat(((Drum) p).getDiameter());
+        } else if (p instanceof Envelope) {
+            out.putInt(((Envelope) p).getHeight());
+            out.putInt(((Envelope) p).getWidth());
+        }
+    }
+
+    private static Package readPackage(Decoder in, byte tag) throws IOException {
+        String ptn = in.getString();
+        String type = in.getLabel();
+        String specification = in.getLabel();
+        String mailingClass = in.getLabel();
+        float weight = in.getFloat();
+        int volume = in.getInt();
+        switch (tag) {
+            case TAG_PACKAGE:
+                return new Package(ptn, type, specification, mailingClass, weight, volume);
+            case TAG_BOX:
+                return new Box(ptn, type, specification, mailingClass, weight, volume, in.getInt());
+            case TAG_CRATE:
+                float loadWeight = in.getFloat();
+                return new Crate(ptn, type, specification, mailingClass, weight, volume,
+                        loadWeight, in.getLabel());
+            case TAG_DRUM:
+                String material = in.getLabel();
+                return new Drum(ptn, type, specification, mailingClass, weight, volume,
+                        material, in.getFloat());
+            case TAG_ENVELOPE:
+                int height = in.getInt();
+                return new Envelope(ptn, type, specification, mailingClass, weight, volume,
+                        height, in.getInt());
+            default:
+                throw new IOException("Unknown package type tag " + tag);
+        }
+    }
+
+    private static void writeUser(Encoder out, User u) {
+        out.putInt(u.getId());
+        out.putString(u.getFirstName());
+        out.putString(u.getLastName());
+        if (u instanceof Employee) {
+            Employee e = (Employee) u;
+            out.putInt(e.getSocialSecurityNumber());
+            out.putFloat(e.getMonthlySalary());
+            out.putInt(e.getBankAccountNumber());
+        } else {
+            Customer c = (Customer) u;
+            out.putString(c.getPhoneNumber());
+            out.putString(c.getAddress());
+        }
+    }
+
+    private static User readUser(Decoder in, byte tag) throws IOException {
+        int id = in.getInt();
+        String firstName = in.getString();
+        String lastName = in.getString();
+        switch (tag) {
+            case TAG_CUSTOMER:
+                String phoneNumber = in.getString();
+                return new Customer(id, firstName, lastName, phoneNumber, in.getString());
+            case TAG_EMPLOYEE:
+                int ssn = in.getInt();
+                float monthlySalary = in.getFloat();
+                return new Employee(id, firstName, lastName, ssn, monthlySalary, in.getInt());
+            default:
+                throw new IOException("Unknown user type tag " + tag);
+        }
+    }
+
+    private static void writeTransaction(Encoder out, Transaction t) {
+        out.putInt(t.getCustomerId());
+        out.putInt(t.getEmployeeId());
+        out.putString(t.getPtn());
+        out.putDate(t.getShippingDate());
+        out.putDate(t.getDeliveryDate());
+        out.putFloat(t.getPrice());
+    }
+
+    private static Transaction readTransaction(Decoder in, byte tag) throws IOException {
+        if (tag != TAG_TRANSACTION) {
+            throw new IOException("Unknown transaction type tag " + tag);
+        }
+        int customerId = in.getInt();
+        int employeeId = in.getInt();
+        String ptn = in.getString();
+        Date shippingDate = in.getDate();
+        Date deliveryDate = in.getDate();
+        return new Transaction(customerId, employeeId, ptn, shippingDate, deliveryDate, in.getFloat());
+    }
+
+    /**
+     * Collects the fields of a record so that its length can be written
+     * before them, and numbers the labels written so far.
+     */
+    private static class Encoder {
+
+        private byte[] bytes = new byte[256];
+        private int length;
+        private final HashMap<String, Integer> labels = new HashMap<String, Integer>();
+
+        /**
+         * Write the fields collected so far as a record and start a new one.
+         */
+        void writeRecord(OutputStream out, byte tag) throws IOException {
+            int fields = length;
+            putVarInt(fields);
+            out.write(tag);
+            out.write(bytes, fields, length - fields);
+            out.write(bytes, 0, fields);
+            length = 0;
+        }
+
+        /**
+         * Write the bytes collected so far as they are and start again.
+         */
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+            length = 0;
+        }
+
+        void putFixedInt(int v) {
+            ensure(4);
+            bytes[length++] = (byte) (v >>> 24);
+            bytes[length++] = (byte) (v >>> 16);
+            bytes[length++] = (byte) (v >>> 8);
+            bytes[length++] = (byte) v;
+        }
+
+        void putFixedShort(short v) {
+            ensure(2);
+            bytes[length++] = (byte) (v >>> 8);
+            bytes[length++] = (byte) v;
+        }
+
+        void putVarInt(int v) {
+            putVarLong(v & 0xFFFFFFFFL);
+        }
+
+        void putVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[length++] = (byte) v;
+        }
+
+        void putInt(int v) {
+            putVarInt((v << 1) ^ (v >> 31));
+        }
+
+        void putFloat(float v) {
+            putFixedInt(Float.floatToIntBits(v));
+        }
+
+        void putDate(Date date) {
+            long v = date == null ? Long.MIN_VALUE : date.getTime();
+            putVarLong((v << 1) ^ (v >> 63));
+        }
+
+        void putString(String s) {
+            if (s == null) {
+                putVarInt(0);
+                return;
+            }
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            putVarInt(utf8.length + 1);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+
+        /**
+         * Write a label: 0 for null, 1 and the string for a label that is not
+         * numbered, or its number plus 2, followed by the string the first time.
+         */
+        void putLabel(String s) {
+            if (s == null) {
+                putVarInt(0);
+                return;
+            }
+            Integer number = labels.get(s);
+            if (number != null) {
+                putVarInt(number + 2);
+            } else if (labels.size() < MAX_LABELS) {
+                putVarInt(labels.size() + 2);
+                labels.put(s, labels.size());
+                putString(s);
+            } else {
+                putVarInt(1);
+                putString(s);
+            }
+        }
+
+        private void ensure(int n) {
+            if (length + n + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + n + 10));
+            }
+        }
+    }
+
+    /**
+     * Reads a ByteBuffer from a position to its limit, without changing the
+     * position of the buffer, so that records in a mapped file can be read
+     * by a Decoder.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+        private int position;
+
+        ByteBufferInputStream(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        @Override
+        public int read() {
+            return position < buffer.limit() ? buffer.get(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int n = Math.min(len, buffer.limit() - position);
+            if (n <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < n; i++) {
+                b[off + i] = buffer.get(position + i);
+            }
+            position += n;
+            return n;
+        }
+    }
+
+    /**
+     * Reads one record at a time into a reused buffer and decodes its fields,
+     * keeping the labels read so far.
+     */
+    private static class Decoder {
+
+        private final InputStream in;
+        private byte[] bytes = new byte[256];
+        private int position;
+        private int limit;
+        private final List<String> labels = new ArrayList<String>();
+
+        Decoder(InputStream in) {
+            this.in = in;
+        }
+
+        int readFixedInt() throws IOException {
+            int v = 0;
+            for (int i = 0; i < 4; i++) {
+                v = (v << 8) | readByte();
+            }
+            return v;
+        }
+
+        int readFixedShort() throws IOException {
+            return (readByte() << 8) | readByte();
+        }
+
+        int readCount() throws IOException {
+            long count = readVarLong();
+            if (count > Integer.MAX_VALUE) {
+                throw new IOException("Invalid record count " + count);
+            }
+            return (int) count;
+        }
+
+        /**
+         * Read the next record.
+         *
+         * @return the type tag of the record
+         */
+        byte readRecord() throws IOException {
+            int tag = readRecordOrEnd();
+            if (tag == -1) {
+                throw new EOFException("Shipping store database is cut short");
+            }
+            return (byte) tag;
+        }
+
+        /**
+         * Read the next record, if there is one.
+         *
+         * @return the type tag of the record, from 0 to 255, or -1 at the end of
+         * the stream
+         */
+        int readRecordOrEnd() throws IOException {
+            int tag = in.read();
+            if (tag == -1) {
+                return -1;
+            }
+            long size = readVarLong();
+            if (size > Integer.MAX_VALUE - 16) {
+                throw new IOException("Invalid record length " + size);
+            }
+            if (size > bytes.length) {
+                bytes = new byte[Math.max((int) size, bytes.length * 2)];
+            }
+            int read = 0;
+            while (read < size) {
+                int n = in.read(bytes, read, (int) size - read);
+                if (n < 0) {
+                    throw new EOFException("Shipping store database is cut short");
+                }
+                read += n;
+            }
+            position = 0;
+            limit = (int) size;
+            return tag;
+        }
+
+        int getInt() throws IOException {
+            int v = (int) getVarLong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        float getFloat() throws IOException {
+            need(4);
+            int v = ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16)
+                    | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+            position += 4;
+            return Float.intBitsToFloat(v);
+        }
+
+        Date getDate() throws IOException {
+            long v = getVarLong();
+            long time = (v >>> 1) ^ -(v & 1);
+            return time == Long.MIN_VALUE ? null : new Date(time);
+        }
+
+        String getString() throws IOException {
+            long n = getVarLong();
+            if (n == 0) {
+                return null;
+            }
+            if (n - 1 > limit - position) {
+                throw new IOException("Invalid string length " + (n - 1));
+            }
+            String s = new String(bytes, position, (int) n - 1, StandardCharsets.UTF_8);
+            position += (int) n - 1;
+            return s;
+        }
+
+        String getLabel() throws IOException {
+            long code = getVarLong();
+            if (code == 0) {
+                return null;
+            }
+            if (code == 1) {
+                return getString();
+            }
+            if (code - 2 < labels.size()) {
+                return labels.get((int) code - 2);
+            }
+            if (code - 2 == labels.size() && labels.size() < MAX_LABELS) {
+                String s = getString();
+                labels.add(s);
+                return s;
+            }
+            throw new IOException("Invalid label number " + (code - 2));
+        }
+
+        private long getVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                need(1);
+                byte b = bytes[position++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return v;
+                }
+            }
+            throw new IOException("Invalid number in shipping store database");
+        }
+
+        private long readVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if (b < 0x80) {
+                    return v;
+                }
+            }
+            throw new IOException("Invalid number in shipping store database");
+        }
+
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Shipping store database is cut short");
+            }
+            return b;
+        }
+
+        private void need(int n) throws IOException {
+            if (limit - position < n) {
+                throw new IOException("Shipping store database record is cut short");
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Shipping Store Management Software v0.1
+ * Developed for CS3354: Object Oriented Design and Programming.
+ */
+
+package shippingstore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class compares ShippingStoreCodec with Java serialization, as
+ * writeDatabase() used before, by the time to save and load a database and
+ * the size of the file. The database has a given number of records
+ * (1,000,000 by default): half of them packages of every type, a quarter users
+ * and a quarter transactions.
+ */
+public class ShippingStoreCodecBenchmark {
+
+    private static final String[] TYPES = {"Postcard", "Letter", "Packet", "Roll", "Tube"};
+    private static final String[] SPECIFICATIONS = {"Fragile", "Books", "Catalogs", "Do-not-Bend", "N/A"};
+    private static final String[] MAILING_CLASSES = {"First-Class", "Priority", "Retail", "Ground", "Metro"};
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args an optional number of records
+     * @throws Exception if a file cannot be written or read
+     */
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        List<Package> packageList = new ArrayList<Package>();
+        List<User> users = new ArrayList<User>();
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        makeRecords(count, packageList, users, transactions);
+
+        File file = File.createTempFile("ShippingStore", ".ser");
+        try {
+            long startTime = System.currentTimeMillis();
+            try (ObjectOutputStream output = new ObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)))) {
+                output.writeObject(packageList);
+                output.writeObject(users);
+                output.writeObject(transactions);
+                output.writeInt(users.size() + 1);
+            }
+            long endTime = System.currentTimeMillis();
+            System.out.printf("save %9d records  =>  %6d ms  %,12d bytes  (serialization)%n", count,
+                    endTime - startTime, file.length());
+
+            startTime = System.currentTimeMillis();
+            try (ObjectInputStream input = new ObjectInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                input.readObject();
+                input.readObject();
+                input.readObject();
+                input.readInt();
+            }
+            endTime = System.currentTimeMillis();
+            System.out.printf("load %9d records  =>  %6d ms  (serialization)%n", count, endTime - startTime);
+
+            startTime = System.currentTimeMillis();
+            try (OutputStream output = new FileOutputStream(file)) {
+                ShippingStoreCodec.write(output, packageList, users, transactions, users.size() + 1);
+            }
+            endTime = System.currentTimeMillis();
+            System.out.printf("save %9d records  =>  %6d ms  %,12d bytes  (codec)%n", count,
+                    endTime - startTime, file.length());
+
+            startTime = System.currentTimeMillis();
+            ShippingStore store;
+            try (InputStream input = new FileInputStream(file)) {
+                store = ShippingStoreCodec.read(input);
+            }
+            endTime = System.currentTimeMillis();
+            System.out.printf("load %9d records  =>  %6d ms  (codec, %d packages)%n", count,
+                    endTime - startTime, store.getListSize());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Fills the lists with random records with distinct tracking numbers and
+     * user IDs.
+     */
+    private static void makeRecords(int count, List<Package> packageList, List<User> users,
+            List<Transaction> transactions) {
+        Random rand = new Random(3354);
+        int packages = count / 2;
+        int userCount = count / 4;
+        for (int i = 0; i < packages; i++) {
+            String ptn = String.format("%05d", i);
+            String specification = SPECIFICATIONS[rand.nextInt(SPECIFICATIONS.length)];
+            String mailingClass = MAILING_CLASSES[rand.nextInt(MAILING_CLASSES.length)];
+            float weight = rand.nextInt(100000) / 100f;
+            int volume = rand.nextInt(1000000);
+            switch (i % 5) {
+                case 0:
+                    packageList.add(new Box(ptn, "Box", specification, mailingClass, weight, volume,
+                            rand.nextInt(100)));
+                    break;
+                case 1:
+                    packageList.add(new Crate(ptn, "Crate", specification, mailingClass, weight, volume,
+                            rand.nextInt(10000) / 10f, "Machine parts"));
+                    break;
+                case 2:
+                    packageList.add(new Drum(ptn, "Drum", specification, mailingClass, weight, volume,
+                            rand.nextBoolean() ? "Plastic" : "Fiber", rand.nextInt(1000) / 10f));
+                    break;
+                case 3:
+                    packageList.add(new Envelope(ptn, "Envelope", specification, mailingClass, weight,
+                            volume, rand.nextInt(20), rand.nextInt(20)));
+                    break;
+                default:
+                    packageList.add(new Package(ptn, TYPES[rand.nextInt(TYPES.length)], specification,
+                            mailingClass, weight, volume));
+            }
+        }
+        for (int i = 1; i <= userCount; i++) {
+            if (i % 2 == 0) {
+                users.add(new Customer(i, "First" + i, "Last" + i, "512-555-" + (1000 + i % 9000),
+                        i + " University Drive, San Marcos, TX"));
+            } else {
+                users.add(new Employee(i, "First" + i, "Last" + i, 100000000 + i,
+                        rand.nextInt(1000000) / 100f, rand.nextInt(Integer.MAX_VALUE)));
+            }
+        }
+        for (int i = packages + userCount; i < count; i++) {
+            Date date = new Date(1500000000000L + rand.nextInt(1000000000));
+            transactions.add(new Transaction(2 * (1 + rand.nextInt(userCount / 2 + 1)),
+                    1 + 2 * rand.nextInt(userCount / 2 + 1), String.format("%05d", i), date, date,
+                    rand.nextInt(100000) / 100f));
+        }
+    }
+}
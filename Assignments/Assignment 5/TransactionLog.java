@@ -0,0 +1,273 @@
+/*
+ * Shipping Store Management Software v0.1
+ * Developed for CS3354: Object Oriented Design and Programming.
+ */
+
+package shippingstore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * TransactionLog is the list of transactions in a transaction log written by
+ * ShippingStoreCodec, read from the file as it is used rather than all at once.
+ * The file is mapped into memory and split into pages of PAGE_SIZE records; a
+ * page is read when one of its transactions is asked for, and the last pages
+ * read are kept. Transactions added to the list are kept in memory, since the
+ * log is appended to when the store is saved.
+ *
+ * To find the pages without reading the whole log, the position of the first
+ * record of each page is kept in an index file next to the log, with the name of
+ * the log followed by ".idx": int magic "SSTI", short version, int page size,
+ * long length of the log it covers, int number of records and int number of
+ * pages, followed by a long position for each page. Records after the length
+ * the index covers are found by reading the rest of the log. The index can
+ * always be built again from the log, so an index that does not match the log
+ * is ignored.
+ */
+class TransactionLog extends AbstractList<Transaction> implements RandomAccess {
+
+    /**
+     * The number of records in a page.
+     */
+    static final int PAGE_SIZE = 1024;
+
+    private static final int INDEX_MAGIC = 0x53535449;
+    private static final short INDEX_VERSION = 1;
+    private static final int CACHED_PAGES = 64;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int start;
+    private long[] pageOffsets = new long[16];
+    private int pages;
+    // The number of records in the file and the position after the last one
+    private int logged;
+    private int end;
+    private final List<Transaction> added = new ArrayList<Transaction>();
+
+    private final Map<Integer, Transaction[]> cache =
+            new LinkedHashMap<Integer, Transaction[]>(CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Transaction[]> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+
+    private TransactionLog(File file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        this.start = ShippingStoreCodec.readTransactionLogHeader(buffer);
+        this.end = start;
+    }
+
+    /**
+     * Opens a transaction log, reading its index and any records after the
+     * part of the log it covers.
+     *
+     * @param file the log
+     * @return the transactions in the log
+     * @throws IOException if the log cannot be read or is not a transaction log
+     */
+    static TransactionLog open(File file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Transaction log is too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        TransactionLog log = new TransactionLog(file, buffer);
+        if (!log.readIndex()) {
+            log.pages = 0;
+            log.logged = 0;
+            log.end = log.start;
+        }
+        log.readRest();
+        return log;
+    }
+
+    /**
+     * Brings the index of a transaction log up to date with the log, reading
+     * only the records it does not cover yet.
+     *
+     * @param file the log
+     * @throws IOException if the log cannot be read or the index cannot be
+     * written
+     */
+    static void updateIndex(File file) throws IOException {
+        open(file).writeIndex();
+    }
+
+    /**
+     * Deletes the index of a transaction log, before the log is written anew.
+     *
+     * @param file the log
+     * @throws IOException if the index cannot be deleted
+     */
+    static void deleteIndex(File file) throws IOException {
+        Files.deleteIfExists(indexFile(file).toPath());
+    }
+
+    /**
+     * Returns false if the last record of the log was cut short, as an append
+     * that did not finish leaves it. That record is not in the list.
+     *
+     * @return true if the log ends after a whole record
+     */
+    boolean isWhole() {
+        return end == buffer.limit();
+    }
+
+    @Override
+    public synchronized Transaction get(int index) {
+        if (index < 0 || index >= logged + added.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        if (index >= logged) {
+            return added.get(index - logged);
+        }
+        int page = index / PAGE_SIZE;
+        Transaction[] records = cache.get(page);
+        if (records == null) {
+            try {
+                records = ShippingStoreCodec.readTransactions(buffer, (int) pageOffsets[page],
+                        Math.min(PAGE_SIZE, logged - page * PAGE_SIZE));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            cache.put(page, records);
+        }
+        return records[index % PAGE_SIZE];
+    }
+
+    @Override
+    public synchronized int size() {
+        return logged + added.size();
+    }
+
+    @Override
+    public synchronized boolean add(Transaction transaction) {
+        modCount++;
+        return added.add(transaction);
+    }
+
+    /**
+     * Adds the records from the end of the part of the log the index covered
+     * to the last whole record.
+     */
+    private void readRest() throws IOException {
+        for (int next = ShippingStoreCodec.skipTransaction(buffer, end); next != -1;
+                next = ShippingStoreCodec.skipTransaction(buffer, end)) {
+            if (logged % PAGE_SIZE == 0) {
+                addPage(end);
+            }
+            logged++;
+            end = next;
+        }
+    }
+
+    private void addPage(long offset) {
+        if (pages == pageOffsets.length) {
+            pageOffsets = Arrays.copyOf(pageOffsets, pages * 2);
+        }
+        pageOffsets[pages++] = offset;
+    }
+
+    /**
+     * Reads the index, checking that it matches the log: its pages must be in
+     * order and its last page must end where the part of the log it covers
+     * ends.
+     *
+     * @return true if the index was read, false if there is none or it does not
+     * match the log
+     */
+    private boolean readIndex() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(indexFile(file))))) {
+            if (in.readInt() != INDEX_MAGIC || in.readShort() != INDEX_VERSION
+                    || in.readInt() != PAGE_SIZE) {
+                return false;
+            }
+            long covered = in.readLong();
+            int count = in.readInt();
+            int pageCount = in.readInt();
+            if (covered < start || covered > buffer.limit() || count < 0
+                    || pageCount != (count + PAGE_SIZE - 1) / PAGE_SIZE) {
+                return false;
+            }
+            pageOffsets = new long[Math.max(16, pageCount)];
+            long last = 0;
+            for (int i = 0; i < pageCount; i++) {
+                long offset = in.readLong();
+                if (offset <= last || offset >= covered || (i == 0 && offset != start)) {
+                    return false;
+                }
+                pageOffsets[i] = last = offset;
+            }
+            pages = pageCount;
+            logged = count;
+            end = (int) covered;
+        } catch (IOException ex) {
+            // A missing, short or unreadable index is built again from the log
+            return false;
+        }
+        if (pages == 0) {
+            return end == start;
+        }
+        int position = (int) pageOffsets[pages - 1];
+        for (int i = (pages - 1) * PAGE_SIZE; i < logged && position != -1; i++) {
+            position = ShippingStoreCodec.skipTransaction(buffer, position);
+        }
+        return position == end;
+    }
+
+    /**
+     * Writes the index to a temporary file that then replaces the old one. It
+     * is not forced to disk, since it is checked against the log when it is
+     * read.
+     */
+    private void writeIndex() throws IOException {
+        File index = indexFile(file);
+        File temp = new File(index.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeShort(INDEX_VERSION);
+            out.writeInt(PAGE_SIZE);
+            out.writeLong(end);
+            out.writeInt(logged);
+            out.writeInt(pages);
+            for (int i = 0; i < pages; i++) {
+                out.writeLong(pageOffsets[i]);
+            }
+        }
+        Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static File indexFile(File file) {
+        return new File(file.getPath() + ".idx");
+    }
+}
@@ -0,0 +1,579 @@
+import java.util.*;
+
+/**
+ * This class carries out an adaptive merge sort in the style of TimSort.
+ * Instead of recursing down to single elements it scans the array for
+ * natural runs, makes descending runs ascending, extends short runs with
+ * binary insertion sort and merges the runs with galloping. Inputs that are
+ * already (nearly) sorted or reversed sort in close to linear time.
+ *
+ * Ranges in this class are given as <CODE>lo</CODE> inclusive and
+ * <CODE>hi</CODE> exclusive.
+ */
+class AdaptiveMergeSorter<E> {
+
+    /**
+     * Arrays shorter than this are sorted with binary insertion sort alone,
+     * and shorter runs are extended to a minimum run length.
+     */
+    private static final int MIN_MERGE = 32;
+
+    /**
+     * Number of consecutive wins by one run after which a merge switches to
+     * galloping mode.
+     */
+    private static final int MIN_GALLOP = 7;
+
+    private final Object[] a;
+    private final Comparator<? super E> comp;
+    private int minGallop = MIN_GALLOP;
+    private Object[] tmp = new Object[0];
+
+    // Stack of pending runs; 49 entries cover any int array length
+    private final int[] runBase = new int[49];
+    private final int[] runLen = new int[49];
+    private int stackSize = 0;
+
+    private AdaptiveMergeSorter(Object[] a, Comparator<? super E> comp) {
+        this.a = a;
+        this.comp = comp;
+    }
+
+    /**
+     * Sorts an array, using the adaptive merge sort algorithm. Equal elements
+     * keep their order.
+     *
+     * @param a the array to sort
+     * @param comp the comparator to compare array elements
+     */
+    static <E> void sort(E[] a, Comparator<? super E> comp) {
+        int lo = 0;
+        int remaining = a.length;
+        if (remaining < 2) {
+            return;
+        }
+
+        AdaptiveMergeSorter<E> sorter = new AdaptiveMergeSorter<>(a, comp);
+        if (remaining < MIN_MERGE) {
+            int initRunLen = sorter.countRunAndMakeAscending(0, a.length);
+            sorter.binaryInsertionSort(0, a.length, initRunLen);
+            return;
+        }
+
+        int minRun = minRunLength(remaining);
+        do {
+            // Find the next run, extending it to minRun if it is short
+            int len = sorter.countRunAndMakeAscending(lo, a.length);
+            if (len < minRun) {
+                int force = remaining <= minRun ? remaining : minRun;
+                sorter.binaryInsertionSort(lo, lo + force, lo + len);
+                len = force;
+            }
+
+            sorter.pushRun(lo, len);
+            sorter.mergeCollapse();
+
+            lo += len;
+            remaining -= len;
+        } while (remaining != 0);
+
+        sorter.mergeForceCollapse();
+    }
+
+    /**
+     * Returns the minimum run length for an array of the given length, chosen
+     * so that the number of runs is a power of two or slightly below one.
+     *
+     * @param n the length of the array
+     * @return the minimum run length
+     */
+    private static int minRunLength(int n) {
+        int r = 0;
+        while (n >= MIN_MERGE) {
+            r |= (n & 1);
+            n >>= 1;
+        }
+        return n + r;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(Object x, Object y) {
+        return comp.compare((E) x, (E) y);
+    }
+
+    /**
+     * Returns the length of the run starting at <CODE>lo</CODE>, reversing it
+     * first if it is strictly descending.
+     *
+     * @param lo the index of the first element of the run
+     * @param hi the index after the last element that may be in the run
+     * @return the length of the run
+     */
+    private int countRunAndMakeAscending(int lo, int hi) {
+        int runHi = lo + 1;
+        if (runHi == hi) {
+            return 1;
+        }
+
+        if (compare(a[runHi++], a[lo]) < 0) {
+            // Strictly descending, so reversing keeps equal elements in order
+            while (runHi < hi && compare(a[runHi], a[runHi - 1]) < 0) {
+                runHi++;
+            }
+            reverseRange(lo, runHi);
+        } else {
+            while (runHi < hi && compare(a[runHi], a[runHi - 1]) >= 0) {
+                runHi++;
+            }
+        }
+        return runHi - lo;
+    }
+
+    private void reverseRange(int lo, int hi) {
+        hi--;
+        while (lo < hi) {
+            Object t = a[lo];
+            a[lo++] = a[hi];
+            a[hi--] = t;
+        }
+    }
+
+    /**
+     * Sorts a range with binary insertion sort, given that the elements from
+     * <CODE>lo</CODE> to <CODE>start</CODE> are already sorted.
+     *
+     * @param lo the index of the first element of the range
+     * @param hi the index after the last element of the range
+     * @param start the index of the first element not yet known to be sorted
+     */
+    private void binaryInsertionSort(int lo, int hi, int start) {
+        if (start == lo) {
+            start++;
+        }
+        for (; start < hi; start++) {
+            Object pivot = a[start];
+            int left = lo;
+            int right = start;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (compare(pivot, a[mid]) < 0) {
+                    right = mid;
+                } else {
+                    left = mid + 1;
+                }
+            }
+            System.arraycopy(a, left, a, left + 1, start - left);
+            a[left] = pivot;
+        }
+    }
+
+    private void pushRun(int base, int len) {
+        runBase[stackSize] = base;
+        runLen[stackSize] = len;
+        stackSize++;
+    }
+
+    /**
+     * Merges adjacent runs until the run lengths on the stack shrink at least
+     * as fast as the Fibonacci numbers, which keeps the merges balanced.
+     */
+    private void mergeCollapse() {
+        while (stackSize > 1) {
+            int n = stackSize - 2;
+            if (n > 0 && runLen[n - 1] <= runLen[n] + runLen[n + 1]
+                    || n > 1 && runLen[n - 2] <= runLen[n] + runLen[n - 1]) {
+                if (runLen[n - 1] < runLen[n + 1]) {
+                    n--;
+                }
+            } else if (runLen[n] > runLen[n + 1]) {
+                break;
+            }
+            mergeAt(n);
+        }
+    }
+
+    /**
+     * Merges all remaining runs into one.
+     */
+    private void mergeForceCollapse() {
+        while (stackSize > 1) {
+            int n = stackSize - 2;
+            if (n > 0 && runLen[n - 1] < runLen[n + 1]) {
+                n--;
+            }
+            mergeAt(n);
+        }
+    }
+
+    /**
+     * Merges the runs at stack positions <CODE>i</CODE> and <CODE>i + 1</CODE>.
+     * Elements of the first run that are already in place and elements of the
+     * second run that are already in place are skipped by galloping.
+     *
+     * @param i the stack position of the first run
+     */
+    private void mergeAt(int i) {
+        int base1 = runBase[i];
+        int len1 = runLen[i];
+        int base2 = runBase[i + 1];
+        int len2 = runLen[i + 1];
+
+        runLen[i] = len1 + len2;
+        if (i == stackSize - 3) {
+            runBase[i + 1] = runBase[i + 2];
+            runLen[i + 1] = runLen[i + 2];
+        }
+        stackSize--;
+
+        // Elements of run1 that are not greater than run2[0] are in place
+        int k = gallopRight(a[base2], a, base1, len1, 0);
+        base1 += k;
+        len1 -= k;
+        if (len1 == 0) {
+            return;
+        }
+
+        // Elements of run2 that are not less than the last of run1 are in place
+        len2 = gallopLeft(a[base1 + len1 - 1], a, base2, len2, len2 - 1);
+        if (len2 == 0) {
+            return;
+        }
+
+        if (len1 <= len2) {
+            mergeLo(base1, len1, base2, len2);
+        } else {
+            mergeHi(base1, len1, base2, len2);
+        }
+    }
+
+    /**
+     * Returns the position at which to insert <CODE>key</CODE> into a sorted
+     * range, before any elements equal to it. The search gallops outward
+     * from <CODE>hint</CODE> and then finishes with a binary search.
+     *
+     * @param key the element to locate
+     * @param arr the array holding the range
+     * @param base the index of the first element of the range
+     * @param len the length of the range
+     * @param hint the offset in the range at which to start
+     * @return the offset k such that arr[base + k - 1] &lt; key &lt;= arr[base + k]
+     */
+    private int gallopLeft(Object key, Object[] arr, int base, int len, int hint) {
+        int lastOfs = 0;
+        int ofs = 1;
+        if (compare(key, arr[base + hint]) > 0) {
+            // Gallop right until arr[base + hint + lastOfs] < key <= arr[base + hint + ofs]
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && compare(key, arr[base + hint + ofs]) > 0) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) {
+                    ofs = maxOfs;
+                }
+            }
+            if (ofs > maxOfs) {
+                ofs = maxOfs;
+            }
+            lastOfs += hint;
+            ofs += hint;
+        } else {
+            // Gallop left until arr[base + hint - ofs] < key <= arr[base + hint - lastOfs]
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && compare(key, arr[base + hint - ofs]) <= 0) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) {
+                    ofs = maxOfs;
+                }
+            }
+            if (ofs > maxOfs) {
+                ofs = maxOfs;
+            }
+            int t = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - t;
+        }
+
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int m = lastOfs + ((ofs - lastOfs) >>> 1);
+            if (compare(key, arr[base + m]) > 0) {
+                lastOfs = m + 1;
+            } else {
+                ofs = m;
+            }
+        }
+        return ofs;
+    }
+
+    /**
+     * Like {@link #gallopLeft}, but returns the position after any elements
+     * equal to <CODE>key</CODE>.
+     *
+     * @param key the element to locate
+     * @param arr the array holding the range
+     * @param base the index of the first element of the range
+     * @param len the length of the range
+     * @param hint the offset in the range at which to start
+     * @return the offset k such that arr[base + k - 1] &lt;= key &lt; arr[base + k]
+     */
+    private int gallopRight(Object key, Object[] arr, int base, int len, int hint) {
+        int lastOfs = 0;
+        int ofs = 1;
+        if (compare(key, arr[base + hint]) < 0) {
+            // Gallop left until arr[base + hint - ofs] <= key < arr[base + hint - lastOfs]
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && compare(key, arr[base + hint - ofs]) < 0) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) {
+                    ofs = maxOfs;
+                }
+            }
+            if (ofs > maxOfs) {
+                ofs = maxOfs;
+            }
+            int t = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - t;
+        } else {
+            // Gallop right until arr[base + hint + lastOfs] <= key < arr[base + hint + ofs]
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && compare(key, arr[base + hint + ofs]) >= 0) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) {
+                    ofs = maxOfs;
+                }
+            }
+            if (ofs > maxOfs) {
+                ofs = maxOfs;
+            }
+            lastOfs += hint;
+            ofs += hint;
+        }
+
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int m = lastOfs + ((ofs - lastOfs) >>> 1);
+            if (compare(key, arr[base + m]) < 0) {
+                ofs = m;
+            } else {
+                lastOfs = m + 1;
+            }
+        }
+        return ofs;
+    }
+
+    /**
+     * Merges two adjacent runs from left to right, copying the shorter first
+     * run into the scratch buffer. The caller guarantees that the first
+     * element of run2 belongs before run1[0] and that the last element of
+     * run1 belongs after all of run2.
+     */
+    private void mergeLo(int base1, int len1, int base2, int len2) {
+        Object[] t = ensureCapacity(len1);
+        System.arraycopy(a, base1, t, 0, len1);
+
+        int cursor1 = 0;
+        int cursor2 = base2;
+        int dest = base1;
+
+        a[dest++] = a[cursor2++];
+        if (--len2 == 0) {
+            System.arraycopy(t, cursor1, a, dest, len1);
+            return;
+        }
+        if (len1 == 1) {
+            System.arraycopy(a, cursor2, a, dest, len2);
+            a[dest + len2] = t[cursor1];
+            return;
+        }
+
+        int gallop = minGallop;
+        outer:
+        while (true) {
+            int count1 = 0; // Number of times in a row that run1 won
+            int count2 = 0; // Number of times in a row that run2 won
+
+            // Merge one element at a time until one run starts winning consistently
+            do {
+                if (compare(a[cursor2], t[cursor1]) < 0) {
+                    a[dest++] = a[cursor2++];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 0) {
+                        break outer;
+                    }
+                } else {
+                    a[dest++] = t[cursor1++];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 1) {
+                        break outer;
+                    }
+                }
+            } while ((count1 | count2) < gallop);
+
+            // Gallop: copy whole blocks until neither run wins big any more
+            do {
+                count1 = gallopRight(a[cursor2], t, cursor1, len1, 0);
+                if (count1 != 0) {
+                    System.arraycopy(t, cursor1, a, dest, count1);
+                    dest += count1;
+                    cursor1 += count1;
+                    len1 -= count1;
+                    if (len1 <= 1) {
+                        break outer;
+                    }
+                }
+                a[dest++] = a[cursor2++];
+                if (--len2 == 0) {
+                    break outer;
+                }
+
+                count2 = gallopLeft(t[cursor1], a, cursor2, len2, 0);
+                if (count2 != 0) {
+                    System.arraycopy(a, cursor2, a, dest, count2);
+                    dest += count2;
+                    cursor2 += count2;
+                    len2 -= count2;
+                    if (len2 == 0) {
+                        break outer;
+                    }
+                }
+                a[dest++] = t[cursor1++];
+                if (--len1 == 1) {
+                    break outer;
+                }
+                gallop--;
+            } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+            if (gallop < 0) {
+                gallop = 0;
+            }
+            gallop += 2; // Penalize leaving galloping mode
+        }
+        minGallop = gallop < 1 ? 1 : gallop;
+
+        if (len1 == 1) {
+            System.arraycopy(a, cursor2, a, dest, len2);
+            a[dest + len2] = t[cursor1]; // Last element of run1 goes at the end
+        } else if (len1 == 0) {
+            throw new IllegalArgumentException("Comparison method violates its general contract!");
+        } else {
+            System.arraycopy(t, cursor1, a, dest, len1);
+        }
+    }
+
+    /**
+     * Merges two adjacent runs from right to left, copying the shorter second
+     * run into the scratch buffer. Same preconditions as {@link #mergeLo}.
+     */
+    private void mergeHi(int base1, int len1, int base2, int len2) {
+        Object[] t = ensureCapacity(len2);
+        System.arraycopy(a, base2, t, 0, len2);
+
+        int cursor1 = base1 + len1 - 1;
+        int cursor2 = len2 - 1;
+        int dest = base2 + len2 - 1;
+
+        a[dest--] = a[cursor1--];
+        if (--len1 == 0) {
+            System.arraycopy(t, 0, a, dest - (len2 - 1), len2);
+            return;
+        }
+        if (len2 == 1) {
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(a, cursor1 + 1, a, dest + 1, len1);
+            a[dest] = t[cursor2];
+            return;
+        }
+
+        int gallop = minGallop;
+        outer:
+        while (true) {
+            int count1 = 0; // Number of times in a row that run1 won
+            int count2 = 0; // Number of times in a row that run2 won
+
+            do {
+                if (compare(t[cursor2], a[cursor1]) < 0) {
+                    a[dest--] = a[cursor1--];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 0) {
+                        break outer;
+                    }
+                } else {
+                    a[dest--] = t[cursor2--];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 1) {
+                        break outer;
+                    }
+                }
+            } while ((count1 | count2) < gallop);
+
+            do {
+                count1 = len1 - gallopRight(t[cursor2], a, base1, len1, len1 - 1);
+                if (count1 != 0) {
+                    dest -= count1;
+                    cursor1 -= count1;
+                    len1 -= count1;
+                    System.arraycopy(a, cursor1 + 1, a, dest + 1, count1);
+                    if (len1 == 0) {
+                        break outer;
+                    }
+                }
+                a[dest--] = t[cursor2--];
+                if (--len2 == 1) {
+                    break outer;
+                }
+
+                count2 = len2 - gallopLeft(a[cursor1], t, 0, len2, len2 - 1);
+                if (count2 != 0) {
+                    dest -= count2;
+                    cursor2 -= count2;
+                    len2 -= count2;
+                    System.arraycopy(t, cursor2 + 1, a, dest + 1, count2);
+                    if (len2 <= 1) {
+                        break outer;
+                    }
+                }
+                a[dest--] = a[cursor1--];
+                if (--len1 == 0) {
+                    break outer;
+                }
+                gallop--;
+            } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+            if (gallop < 0) {
+                gallop = 0;
+            }
+            gallop += 2; // Penalize leaving galloping mode
+        }
+        minGallop = gallop < 1 ? 1 : gallop;
+
+        if (len2 == 1) {
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(a, cursor1 + 1, a, dest + 1, len1);
+            a[dest] = t[cursor2]; // First element of run2 goes at the front
+        } else if (len2 == 0) {
+            throw new IllegalArgumentException("Comparison method violates its general contract!");
+        } else {
+            System.arraycopy(t, 0, a, dest - (len2 - 1), len2);
+        }
+    }
+
+    /**
+     * Returns a scratch buffer of at least the given length, growing the
+     * current one geometrically so repeated merges do not reallocate.
+     */
+    private Object[] ensureCapacity(int minCapacity) {
+        if (tmp.length < minCapacity) {
+            int newSize = Math.max(minCapacity, Math.min(tmp.length * 2 + 1, a.length / 2 + 1));
+            tmp = new Object[Math.max(newSize, minCapacity)];
+        }
+        return tmp;
+    }
+}
@@ -0,0 +1,335 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class sorts streams of records that do not fit in memory. Records are
+ * read in chunks of a fixed size. Each chunk is sorted with the stable
+ * <CODE>ParallelMergeSorter.bufferedSort</CODE> and written to a temporary
+ * run file. The
+ * runs are then merged with a priority queue that holds the next record of
+ * every run. If there are more runs than can be open at once, they are
+ * merged in several passes.
+ *
+ * The sort is stable: records that compare equal keep their input order.
+ *
+ * @param <E> the type of the records
+ */
+public class ExternalMergeSorter<E> {
+
+    /**
+     * The default number of records sorted in memory at a time.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * The most runs merged in one pass, which bounds the number of open
+     * files and read buffers.
+     */
+    static final int MAX_MERGE_WIDTH = 64;
+
+    /**
+     * The buffer size of each run reader and writer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final RecordSerializer<E> serializer;
+    private final Comparator<? super E> comp;
+    private final int chunkSize;
+    private final File tempDir;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor used to create a sorter with the default chunk size that
+     * writes its runs to the system temporary directory and sorts chunks on
+     * the common pool.
+     *
+     * @param serializer the serializer of the records
+     * @param comp the comparator to compare records
+     */
+    public ExternalMergeSorter(RecordSerializer<E> serializer, Comparator<? super E> comp) {
+        this(serializer, comp, DEFAULT_CHUNK_SIZE, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor used to initialize the sorter.
+     *
+     * @param serializer the serializer of the records
+     * @param comp the comparator to compare records
+     * @param chunkSize the number of records sorted in memory at a time
+     * @param tempDir the directory for the run files, or null for the system
+     * temporary directory
+     * @param pool the pool that sorts each chunk
+     */
+    public ExternalMergeSorter(RecordSerializer<E> serializer, Comparator<? super E> comp,
+            int chunkSize, File tempDir, ForkJoinPool pool) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1.");
+        }
+        this.serializer = serializer;
+        this.comp = comp;
+        this.chunkSize = chunkSize;
+        this.tempDir = tempDir;
+        this.pool = pool;
+    }
+
+    /**
+     * Sorts the records of a file written with the serializer, one record
+     * after another, and writes them in order to another file in the same
+     * format.
+     *
+     * @param input the file to sort
+     * @param output the file to write the sorted records to
+     * @return the number of records sorted
+     * @throws IOException if a file cannot be read or written
+     */
+    public long sort(File input, File output) throws IOException {
+        try (RecordReader reader = new RecordReader(input, -1)) {
+            return sort(reader, output);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Sorts the given records and writes them in order to a file, one
+     * record after another.
+     *
+     * @param input the records to sort
+     * @param output the file to write the sorted records to
+     * @return the number of records sorted
+     * @throws IOException if a file cannot be read or written
+     */
+    public long sort(Iterator<? extends E> input, File output) throws IOException {
+        List<Run> runs = new ArrayList<>();
+        try {
+            @SuppressWarnings("unchecked")
+            E[] chunk = (E[]) new Object[chunkSize];
+            long total = 0;
+            while (input.hasNext()) {
+                int n = 0;
+                while (n < chunkSize && input.hasNext()) {
+                    chunk[n++] = input.next();
+                }
+                total += n;
+                E[] sorted = n == chunkSize ? chunk : Arrays.copyOf(chunk, n);
+                ParallelMergeSorter.bufferedSort(sorted, comp, pool);
+
+                if (runs.isEmpty() && !input.hasNext()) {
+                    // Everything fit in one chunk, so no run files are needed
+                    writeRecords(sorted, n, output);
+                    return total;
+                }
+                Run run = createRun();
+                runs.add(run);
+                writeRecords(sorted, n, run.file);
+                run.count = n;
+            }
+            Arrays.fill(chunk, null);
+
+            if (runs.isEmpty()) {
+                writeRecords(chunk, 0, output);
+                return 0;
+            }
+            while (runs.size() > MAX_MERGE_WIDTH) {
+                runs = mergePass(runs);
+            }
+            merge(runs, output);
+            return total;
+        } finally {
+            for (Run run : runs) {
+                run.file.delete();
+            }
+        }
+    }
+
+    /**
+     * Merges each group of up to <CODE>MAX_MERGE_WIDTH</CODE> runs into a
+     * new run, deleting the merged runs.
+     *
+     * @param runs the runs to merge, in input order
+     * @return the new runs, in input order
+     * @throws IOException if a run cannot be read or written
+     */
+    private List<Run> mergePass(List<Run> runs) throws IOException {
+        List<Run> merged = new ArrayList<>();
+        try {
+            for (int from = 0; from < runs.size(); from += MAX_MERGE_WIDTH) {
+                List<Run> group = runs.subList(from, Math.min(from + MAX_MERGE_WIDTH, runs.size()));
+                Run run = createRun();
+                merged.add(run);
+                run.count = merge(group, run.file);
+                for (Run r : group) {
+                    r.file.delete();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Run run : merged) {
+                run.file.delete();
+            }
+            throw e;
+        }
+        return merged;
+    }
+
+    /**
+     * Merges sorted runs into one file. When two records compare equal, the
+     * one from the earlier run is written first.
+     *
+     * @param runs the runs to merge, in input order
+     * @param output the file to write the merged records to
+     * @return the number of records written
+     * @throws IOException if a run cannot be read or the output written
+     */
+    private long merge(List<Run> runs, File output) throws IOException {
+        PriorityQueue<RecordReader> heads = new PriorityQueue<>(runs.size(),
+                (r1, r2) -> {
+                    int c = comp.compare(r1.head, r2.head);
+                    return c != 0 ? c : Integer.compare(r1.order, r2.order);
+                });
+        List<RecordReader> readers = new ArrayList<>(runs.size());
+        long written = 0;
+        try (DataOutputStream out = openOutput(output)) {
+            for (int i = 0; i < runs.size(); i++) {
+                RecordReader reader = new RecordReader(runs.get(i).file, runs.get(i).count);
+                reader.order = i;
+                readers.add(reader);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+            while (!heads.isEmpty()) {
+                RecordReader reader = heads.poll();
+                serializer.write(out, reader.head);
+                written++;
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+        } finally {
+            for (RecordReader reader : readers) {
+                reader.close();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Writes the first <CODE>n</CODE> records of an array to a file.
+     */
+    private void writeRecords(E[] records, int n, File file) throws IOException {
+        try (DataOutputStream out = openOutput(file)) {
+            for (int i = 0; i < n; i++) {
+                serializer.write(out, records[i]);
+            }
+        }
+    }
+
+    private Run createRun() throws IOException {
+        Run run = new Run();
+        run.file = File.createTempFile("sort-run", ".tmp", tempDir);
+        return run;
+    }
+
+    private static DataOutputStream openOutput(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    }
+
+    /**
+     * A sorted run spilled to a temporary file.
+     */
+    private static class Run {
+        File file;
+        long count;
+    }
+
+    /**
+     * Reads the records of a file one at a time, either a known number of
+     * them or until the end of the file.
+     */
+    private class RecordReader implements Iterator<E>, AutoCloseable {
+
+        private final BufferedInputStream buffer;
+        private final DataInputStream in;
+        private long remaining;
+        private E head;
+        private boolean hasHead;
+        private int order;
+
+        /**
+         * @param file the file to read
+         * @param count the number of records in the file, or -1 to read
+         * until the end of the file
+         */
+        RecordReader(File file, long count) throws IOException {
+            buffer = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+            in = new DataInputStream(buffer);
+            remaining = count;
+        }
+
+        /**
+         * Reads the next record into <CODE>head</CODE>.
+         *
+         * @return false if there are no more records
+         */
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                head = null;
+                return false;
+            }
+            if (remaining < 0) {
+                buffer.mark(1);
+                if (buffer.read() < 0) {
+                    remaining = 0;
+                    head = null;
+                    return false;
+                }
+                buffer.reset();
+            } else {
+                remaining--;
+            }
+            head = serializer.read(in);
+            return true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!hasHead) {
+                try {
+                    hasHead = advance();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return hasHead;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasHead = false;
+            return head;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
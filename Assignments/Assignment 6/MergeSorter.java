@@ -1,4 +1,8 @@
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 /**
  * This class carries out the merge sort algorithm.
@@ -12,7 +16,32 @@ public class MergeSorter {
      * @param comp the comparator to compare array elements
      */
     public static <E> void sort(E[] a, Comparator<? super E> comp) {
-        mergeSort(a, 0, a.length - 1, comp);
+        sort(a, comp, SortOptions.DEFAULT);
+    }
+
+    /**
+     * Sorts an array, using the merge sort algorithm tuned by the given
+     * options.
+     *
+     * @param a the array to sort
+     * @param comp the comparator to compare array elements
+     * @param options the small-range and merge options
+     */
+    public static <E> void sort(E[] a, Comparator<? super E> comp, SortOptions options) {
+        mergeSort(a, 0, a.length - 1, comp, options);
+    }
+
+    /**
+     * Sorts an array, using an adaptive merge sort that detects ascending and
+     * descending runs already present in the input. Sorted, reversed and
+     * nearly sorted arrays take close to linear time. Equal elements keep
+     * their order.
+     *
+     * @param a the array to sort
+     * @param comp the comparator to compare array elements
+     */
+    public static <E> void adaptiveSort(E[] a, Comparator<? super E> comp) {
+        AdaptiveMergeSorter.sort(a, comp);
     }
 
     /**
@@ -24,16 +53,141 @@ public class MergeSorter {
      * @param comp the comparator to compare array elements
      */
     static <E> void mergeSort(E[] a, int from, int to, Comparator<? super E> comp) {
-        if (from == to) {
+        mergeSort(a, from, to, comp, SortOptions.DEFAULT);
+    }
+
+    /**
+     * Sorts a range of an array, using the merge sort algorithm tuned by the
+     * given options.
+     *
+     * @param a the array to sort
+     * @param from the first index of the range to sort
+     * @param to the last index of the range to sort
+     * @param comp the comparator to compare array elements
+     * @param options the small-range and merge options
+     */
+    static <E> void mergeSort(E[] a, int from, int to, Comparator<? super E> comp,
+            SortOptions options) {
+        if (to - from < options.getInsertionSortThreshold()) {
+            insertionSort(a, from, to, comp);
             return;
         }
         int mid = (from + to) / 2;
         // Sort the first and the second half
-        mergeSort(a, from, mid, comp);
-        mergeSort(a, mid + 1, to, comp);
+        mergeSort(a, from, mid, comp, options);
+        mergeSort(a, mid + 1, to, comp, options);
+        // Halves that are already in order need no merge
+        if (options.isSkipSortedMerge() && comp.compare(a[mid], a[mid + 1]) <= 0) {
+            return;
+        }
         merge(a, from, mid, to, comp);
     }
 
+    /**
+     * Sorts a small range of an array, using the insertion sort algorithm.
+     * Equal elements keep their order.
+     *
+     * @param a the array to sort
+     * @param from the first index of the range to sort
+     * @param to the last index of the range to sort
+     * @param comp the comparator to compare array elements
+     */
+    static <E> void insertionSort(E[] a, int from, int to, Comparator<? super E> comp) {
+        for (int i = from + 1; i <= to; i++) {
+            E next = a[i];
+            int j = i;
+            while (j > from && comp.compare(a[j - 1], next) > 0) {
+                a[j] = a[j - 1];
+                j--;
+            }
+            a[j] = next;
+        }
+    }
+
+    /**
+     * Sorts an array, using the merge sort algorithm with a single auxiliary
+     * buffer. The merges alternate direction between the array and the
+     * buffer, so no merge allocates memory or copies its result back.
+     *
+     * @param a the array to sort
+     * @param comp the comparator to compare array elements
+     */
+    public static <E> void bufferedSort(E[] a, Comparator<? super E> comp) {
+        bufferedSort(a, comp, SortOptions.DEFAULT);
+    }
+
+    /**
+     * Sorts an array with a single auxiliary buffer, tuned by the given
+     * options.
+     *
+     * @param a the array to sort
+     * @param comp the comparator to compare array elements
+     * @param options the small-range and merge options
+     */
+    public static <E> void bufferedSort(E[] a, Comparator<? super E> comp, SortOptions options) {
+        if (a.length < 2) {
+            return;
+        }
+        Object[] aux = a.clone();
+        mergeSort(aux, a, 0, a.length - 1, comp, options);
+    }
+
+    /**
+     * Sorts a range of <CODE>src</CODE> into the same range of
+     * <CODE>dest</CODE>. On entry both arrays must hold the same elements in
+     * the range; <CODE>src</CODE> is used as scratch space.
+     *
+     * @param src the array to sort from
+     * @param dest the array that receives the sorted range
+     * @param from the first index of the range to sort
+     * @param to the last index of the range to sort
+     * @param comp the comparator to compare array elements
+     * @param options the small-range and merge options
+     */
+    @SuppressWarnings("unchecked")
+    static <E> void mergeSort(Object[] src, Object[] dest, int from, int to,
+            Comparator<? super E> comp, SortOptions options) {
+        if (to - from < options.getInsertionSortThreshold()) {
+            // Both arrays still hold the original elements here
+            insertionSort((E[]) dest, from, to, comp);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        // Sort both halves into src, then merge them back into dest
+        mergeSort(dest, src, from, mid, comp, options);
+        mergeSort(dest, src, mid + 1, to, comp, options);
+        if (options.isSkipSortedMerge() && comp.compare((E) src[mid], (E) src[mid + 1]) <= 0) {
+            System.arraycopy(src, from, dest, from, to - from + 1);
+            return;
+        }
+        merge(src, dest, from, mid, to, comp);
+    }
+
+    /**
+     * Merges two adjacent sorted subranges of <CODE>src</CODE> into the same
+     * index range of <CODE>dest</CODE>. Equal elements keep their order.
+     *
+     * @param src the array with entries to be merged
+     * @param dest the array that receives the merged range
+     * @param from the index of the first element of the first range
+     * @param mid the index of the last element of the first range
+     * @param to the index of the last element of the second range
+     * @param comp the comparator to compare array elements
+     */
+    @SuppressWarnings("unchecked")
+    static <E> void merge(Object[] src, Object[] dest,
+            int from, int mid, int to, Comparator<? super E> comp) {
+        int i1 = from;
+        int i2 = mid + 1;
+        for (int j = from; j <= to; j++) {
+            if (i2 > to || (i1 <= mid && comp.compare((E) src[i2], (E) src[i1]) >= 0)) {
+                dest[j] = src[i1++];
+            } else {
+                dest[j] = src[i2++];
+            }
+        }
+    }
+
     /**
      * Merges two adjacent subranges of an array
      *
@@ -93,4 +247,461 @@ public class MergeSorter {
             a[from + j] = (E) b[j];
         }
     }
+
+    /**
+     * Sorts an array of <CODE>int</CODE> values in ascending order, using the
+     * merge sort algorithm with a single <CODE>int</CODE> scratch buffer.
+     *
+     * @param a the array to sort
+     */
+    public static void sort(int[] a) {
+        mergeSort(a, 0, a.length - 1, new int[a.length]);
+    }
+
+    /**
+     * Sorts a range of an array of <CODE>int</CODE> values, using the merge
+     * sort algorithm.
+     *
+     * @param a the array to sort
+     * @param from the first index of the range to sort
+     * @param to the last index of the range to sort
+     * @param b the scratch buffer, at least as long as <CODE>to + 1</CODE>
+     */
+    static void mergeSort(int[] a, int from, int to, int[] b) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(a, from, mid, b);
+        mergeSort(a, mid + 1, to, b);
+        merge(a, from, mid, to, b);
+    }
+
+    /**
+     * Merges two adjacent sorted subranges of a <CODE>int</CODE> array,
+     * using the same index range of the scratch buffer.
+     *
+     * @param a the array with entries to be merged
+     * @param from the index of the first element of the first range
+     * @param mid the index of the last element of the first range
+     * @param to the index of the last element of the second range
+     * @param b the scratch buffer
+     */
+    static void merge(int[] a, int from, int mid, int to, int[] b) {
+        int i1 = from;
+        int i2 = mid + 1;
+        int j = from;
+        while (i1 <= mid && i2 <= to) {
+            if (a[i1] <= a[i2]) {
+                b[j++] = a[i1++];
+            } else {
+                b[j++] = a[i2++];
+            }
+        }
+        // Only the first half can have leftovers that are not already in place
+        System.arraycopy(a, i1, b, j, mid - i1 + 1);
+        System.arraycopy(b, from, a, from, i2 - from);
+    }
+
+    /**
+     * Sorts an array of <CODE>long</CODE> values in ascending order, using the
+     * merge sort algorithm with a single <CODE>long</CODE> scratch buffer.
+     *
+     * @param a the array to sort
+     */
+    public static void sort(long[] a) {
+        mergeSort(a, 0, a.length - 1, new long[a.length]);
+    }
+
+    /**
+     * Sorts a range of an array of <CODE>long</CODE> values, using the merge
+     * sort algorithm.
+     *
+     * @param a the array to sort
+     * @param from the first index of the range to sort
+     * @param to the last index of the range to sort
+     * @param b the scratch buffer, at least as long as <CODE>to + 1</CODE>
+     */
+    static void mergeSort(long[] a, int from, int to, long[] b) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(a, from, mid, b);
+        mergeSort(a, mid + 1, to, b);
+        merge(a, from, mid, to, b);
+    }
+
+    /**
+     * Merges two adjacent sorted subranges of a <CODE>long</CODE> array,
+     * using the same index range of the scratch buffer.
+     *
+     * @param a the array with entries to be merged
+     * @param from the index of the first element of the first range
+     * @param mid the index of the last element of the first range
+     * @param to the index of the last element of the second range
+     * @param b the scratch buffer
+     */
+    static void merge(long[] a, int from, int mid, int to, long[] b) {
+        int i1 = from;
+        int i2 = mid + 1;
+        int j = from;
+        while (i1 <= mid && i2 <= to) {
+            if (a[i1] <= a[i2]) {
+                b[j++] = a[i1++];
+            } else {
+                b[j++] = a[i2++];
+            }
+        }
+        // Only the first half can have leftovers that are not already in place
+        System.arraycopy(a, i1, b, j, mid - i1 + 1);
+        System.arraycopy(b, from, a, from, i2 - from);
+    }
+
+    /**
+     * Sorts an array of <CODE>float</CODE> values in ascending order, using the
+     * merge sort algorithm with a single <CODE>float</CODE> scratch buffer.
+     * Values are ordered as by <CODE>Float.compare</CODE>, so -0.0 sorts before
+     * 0.0 and NaN sorts last.
+     *
+     * @param a the array to sort
+     */
+    public static void sort(float[] a) {
+        mergeSort(a, 0, a.length - 1, new float[a.length]);
+    }
+
+    /**
+     * Sorts a range of an array of <CODE>float</CODE> values, using the merge
+     * sort algorithm.
+     *
+     * @param a the array to sort
+     * @param from the first index of the range to sort
+     * @param to the last index of the range to sort
+     * @param b the scratch buffer, at least as long as <CODE>to + 1</CODE>
+     */
+    static void mergeSort(float[] a, int from, int to, float[] b) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(a, from, mid, b);
+        mergeSort(a, mid + 1, to, b);
+        merge(a, from, mid, to, b);
+    }
+
+    /**
+     * Merges two adjacent sorted subranges of a <CODE>float</CODE> array,
+     * using the same index range of the scratch buffer.
+     *
+     * @param a the array with entries to be merged
+     * @param from the index of the first element of the first range
+     * @param mid the index of the last element of the first range
+     * @param to the index of the last element of the second range
+     * @param b the scratch buffer
+     */
+    static void merge(float[] a, int from, int mid, int to, float[] b) {
+        int i1 = from;
+        int i2 = mid + 1;
+        int j = from;
+        while (i1 <= mid && i2 <= to) {
+            if (Float.compare(a[i1], a[i2]) <= 0) {
+                b[j++] = a[i1++];
+            } else {
+                b[j++] = a[i2++];
+            }
+        }
+        // Only the first half can have leftovers that are not already in place
+        System.arraycopy(a, i1, b, j, mid - i1 + 1);
+        System.arraycopy(b, from, a, from, i2 - from);
+    }
+
+    /**
+     * Sorts an array of <CODE>double</CODE> values in ascending order, using the
+     * merge sort algorithm with a single <CODE>double</CODE> scratch buffer.
+     * Values are ordered as by <CODE>Double.compare</CODE>, so -0.0 sorts before
+     * 0.0 and NaN sorts last.
+     *
+     * @param a the array to sort
+     */
+    public static void sort(double[] a) {
+        mergeSort(a, 0, a.length - 1, new double[a.length]);
+    }
+
+    /**
+     * Sorts a range of an array of <CODE>double</CODE> values, using the merge
+     * sort algorithm.
+     *
+     * @param a the array to sort
+     * @param from the first index of the range to sort
+     * @param to the last index of the range to sort
+     * @param b the scratch buffer, at least as long as <CODE>to + 1</CODE>
+     */
+    static void mergeSort(double[] a, int from, int to, double[] b) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(a, from, mid, b);
+        mergeSort(a, mid + 1, to, b);
+        merge(a, from, mid, to, b);
+    }
+
+    /**
+     * Merges two adjacent sorted subranges of a <CODE>double</CODE> array,
+     * using the same index range of the scratch buffer.
+     *
+     * @param a the array with entries to be merged
+     * @param from the index of the first element of the first range
+     * @param mid the index of the last element of the first range
+     * @param to the index of the last element of the second range
+     * @param b the scratch buffer
+     */
+    static void merge(double[] a, int from, int mid, int to, double[] b) {
+        int i1 = from;
+        int i2 = mid + 1;
+        int j = from;
+        while (i1 <= mid && i2 <= to) {
+            if (Double.compare(a[i1], a[i2]) <= 0) {
+                b[j++] = a[i1++];
+            } else {
+                b[j++] = a[i2++];
+            }
+        }
+        // Only the first half can have leftovers that are not already in place
+        System.arraycopy(a, i1, b, j, mid - i1 + 1);
+        System.arraycopy(b, from, a, from, i2 - from);
+    }
+
+    /**
+     * Sorts an array by a key derived from each element. Each key is computed
+     * once and kept in an array next to the element's index, so an expensive
+     * key such as a lower-cased tracking number is not recomputed on every
+     * comparison. Elements with equal keys keep their order.
+     *
+     * @param a the array to sort
+     * @param key the function that computes the sort key of an element
+     * @param comp the comparator to compare keys
+     */
+    public static <E, K> void sortByKey(E[] a, Function<? super E, ? extends K> key,
+            Comparator<? super K> comp) {
+        int n = a.length;
+        if (n < 2) {
+            return;
+        }
+        Object[] keys = new Object[n];
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = key.apply(a[i]);
+            index[i] = i;
+        }
+        @SuppressWarnings("unchecked")
+        Comparator<Object> keyComp = (Comparator<Object>) comp;
+        mergeSortByKey(keys, index, 0, n - 1, new Object[n], new int[n], keyComp);
+        permute(a, index);
+    }
+
+    /**
+     * Sorts an array by an <CODE>int</CODE> key derived from each element.
+     * Each key is packed with the element's index into one <CODE>long</CODE>,
+     * so the pairs are sorted as plain <CODE>long</CODE> values. Elements with
+     * equal keys keep their order.
+     *
+     * @param a the array to sort
+     * @param key the function that computes the sort key of an element
+     */
+    public static <E> void sortByIntKey(E[] a, ToIntFunction<? super E> key) {
+        int n = a.length;
+        if (n < 2) {
+            return;
+        }
+        long[] pairs = new long[n];
+        for (int i = 0; i < n; i++) {
+            // The key is the signed high word, the index breaks ties
+            pairs[i] = ((long) key.applyAsInt(a[i]) << 32) | i;
+        }
+        sort(pairs);
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++) {
+            index[i] = (int) pairs[i];
+        }
+        permute(a, index);
+    }
+
+    /**
+     * Sorts an array by a <CODE>long</CODE> key derived from each element.
+     * Each key is computed once. Elements with equal keys keep their order.
+     *
+     * @param a the array to sort
+     * @param key the function that computes the sort key of an element
+     */
+    public static <E> void sortByLongKey(E[] a, ToLongFunction<? super E> key) {
+        int n = a.length;
+        if (n < 2) {
+            return;
+        }
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = key.applyAsLong(a[i]);
+        }
+        sortByKeys(a, keys);
+    }
+
+    /**
+     * Sorts an array by a <CODE>double</CODE> key derived from each element,
+     * such as a price. Keys are ordered as by <CODE>Double.compare</CODE>.
+     * Each key is computed once. Elements with equal keys keep their order.
+     *
+     * @param a the array to sort
+     * @param key the function that computes the sort key of an element
+     */
+    public static <E> void sortByDoubleKey(E[] a, ToDoubleFunction<? super E> key) {
+        int n = a.length;
+        if (n < 2) {
+            return;
+        }
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            // Turn the bits into a long that orders like Double.compare
+            long bits = Double.doubleToLongBits(key.applyAsDouble(a[i]));
+            keys[i] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+        sortByKeys(a, keys);
+    }
+
+    /**
+     * Sorts an array by the given precomputed <CODE>long</CODE> keys, moving
+     * the keys and the element indexes together.
+     *
+     * @param a the array to sort
+     * @param keys the key of each element
+     */
+    private static <E> void sortByKeys(E[] a, long[] keys) {
+        int n = a.length;
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++) {
+            index[i] = i;
+        }
+        mergeSortByKey(keys, index, 0, n - 1, new long[n], new int[n]);
+        permute(a, index);
+    }
+
+    /**
+     * Rearranges an array so that position <CODE>i</CODE> holds the element
+     * that was at <CODE>index[i]</CODE>.
+     *
+     * @param a the array to rearrange
+     * @param index the old position of each element in the new order
+     */
+    private static <E> void permute(E[] a, int[] index) {
+        Object[] old = a.clone();
+        for (int i = 0; i < a.length; i++) {
+            @SuppressWarnings("unchecked")
+            E e = (E) old[index[i]];
+            a[i] = e;
+        }
+    }
+
+    /**
+     * Sorts a range of keys, moving the element indexes along with them.
+     *
+     * @param keys the keys to sort
+     * @param index the element index of each key
+     * @param from the first index of the range to sort
+     * @param to the last index of the range to sort
+     * @param kb the scratch buffer for keys
+     * @param ib the scratch buffer for indexes
+     * @param comp the comparator to compare keys
+     */
+    private static void mergeSortByKey(Object[] keys, int[] index, int from, int to,
+            Object[] kb, int[] ib, Comparator<Object> comp) {
+        if (to - from < SortOptions.DEFAULT_INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i <= to; i++) {
+                Object k = keys[i];
+                int x = index[i];
+                int j = i;
+                while (j > from && comp.compare(keys[j - 1], k) > 0) {
+                    keys[j] = keys[j - 1];
+                    index[j] = index[j - 1];
+                    j--;
+                }
+                keys[j] = k;
+                index[j] = x;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSortByKey(keys, index, from, mid, kb, ib, comp);
+        mergeSortByKey(keys, index, mid + 1, to, kb, ib, comp);
+        if (comp.compare(keys[mid], keys[mid + 1]) <= 0) {
+            return;
+        }
+        int i1 = from;
+        int i2 = mid + 1;
+        int j = from;
+        while (i1 <= mid && i2 <= to) {
+            if (comp.compare(keys[i1], keys[i2]) <= 0) {
+                kb[j] = keys[i1];
+                ib[j++] = index[i1++];
+            } else {
+                kb[j] = keys[i2];
+                ib[j++] = index[i2++];
+            }
+        }
+        System.arraycopy(keys, i1, kb, j, mid - i1 + 1);
+        System.arraycopy(index, i1, ib, j, mid - i1 + 1);
+        System.arraycopy(kb, from, keys, from, i2 - from);
+        System.arraycopy(ib, from, index, from, i2 - from);
+    }
+
+    /**
+     * Sorts a range of <CODE>long</CODE> keys, moving the element indexes
+     * along with them.
+     *
+     * @param keys the keys to sort
+     * @param index the element index of each key
+     * @param from the first index of the range to sort
+     * @param to the last index of the range to sort
+     * @param kb the scratch buffer for keys
+     * @param ib the scratch buffer for indexes
+     */
+    private static void mergeSortByKey(long[] keys, int[] index, int from, int to,
+            long[] kb, int[] ib) {
+        if (to - from < SortOptions.DEFAULT_INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i <= to; i++) {
+                long k = keys[i];
+                int x = index[i];
+                int j = i;
+                while (j > from && keys[j - 1] > k) {
+                    keys[j] = keys[j - 1];
+                    index[j] = index[j - 1];
+                    j--;
+                }
+                keys[j] = k;
+                index[j] = x;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSortByKey(keys, index, from, mid, kb, ib);
+        mergeSortByKey(keys, index, mid + 1, to, kb, ib);
+        if (keys[mid] <= keys[mid + 1]) {
+            return;
+        }
+        int i1 = from;
+        int i2 = mid + 1;
+        int j = from;
+        while (i1 <= mid && i2 <= to) {
+            if (keys[i1] <= keys[i2]) {
+                kb[j] = keys[i1];
+                ib[j++] = index[i1++];
+            } else {
+                kb[j] = keys[i2];
+                ib[j++] = index[i2++];
+            }
+        }
+        System.arraycopy(keys, i1, kb, j, mid - i1 + 1);
+        System.arraycopy(index, i1, ib, j, mid - i1 + 1);
+        System.arraycopy(kb, from, keys, from, i2 - from);
+        System.arraycopy(ib, from, index, from, i2 - from);
+    }
 }
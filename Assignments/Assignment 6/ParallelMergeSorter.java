@@ -1,15 +1,129 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+/**
+ * This class carries out the merge sort algorithm in parallel. The work is
+ * split into <CODE>RecursiveAction</CODE> tasks that run on a
+ * <CODE>ForkJoinPool</CODE>, so idle worker threads steal subranges from
+ * busy ones instead of waiting on a fixed thread tree.
+ */
 public class ParallelMergeSorter
 {
     /**
-     * Sorts a range of an array, using the merge sort algorithm.
+     * Ranges at or below this size are always sorted sequentially, since
+     * forking a task costs more than sorting them directly.
+     */
+    static final int MIN_SEQUENTIAL_SIZE = 8192;
+
+    /**
+     * Number of tasks created per worker thread. A few tasks per worker lets
+     * the pool balance uneven subproblems by work stealing.
+     */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /**
+     * Sorts an array, using the merge sort algorithm on a pool with the given
+     * number of worker threads. Any core count is used fully, including odd
+     * ones.
      *
      * @param a the array to sort
      * @param comp the comparator to compare array elements
+     * @param numCores the number of worker threads to use
      */
     public static <E> void sort(E[] a, Comparator<? super E> comp, Integer numCores) {
-        parallelMergeSort(a, 0, a.length - 1, comp, numCores);
+        if (numCores <= 1) {
+            MergeSorter.sort(a, comp);
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(numCores);
+        try {
+            sort(a, comp, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sorts an array, using the merge sort algorithm on the common pool.
+     *
+     * @param a the array to sort
+     * @param comp the comparator to compare array elements
+     */
+    public static <E> void sort(E[] a, Comparator<? super E> comp) {
+        sort(a, comp, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts an array, using the merge sort algorithm on the given pool.
+     *
+     * @param a the array to sort
+     * @param comp the comparator to compare array elements
+     * @param pool the pool that runs the sort tasks
+     */
+    public static <E> void sort(E[] a, Comparator<? super E> comp, ForkJoinPool pool) {
+        sort(a, comp, pool, SortOptions.DEFAULT);
+    }
+
+    /**
+     * Sorts an array, using the merge sort algorithm on the given pool, tuned
+     * by the given options.
+     *
+     * @param a the array to sort
+     * @param comp the comparator to compare array elements
+     * @param pool the pool that runs the sort tasks
+     * @param options the small-range and merge options
+     */
+    public static <E> void sort(E[] a, Comparator<? super E> comp, ForkJoinPool pool,
+            SortOptions options) {
+        if (a.length < 2) {
+            return;
+        }
+        pool.invoke(new SortTask<>(a, 0, a.length - 1, comp, options,
+                sequentialCutoff(a.length, pool.getParallelism())));
+    }
+
+    /**
+     * Sorts an array on the common pool, using one auxiliary buffer for the
+     * whole sort. See {@link MergeSorter#bufferedSort}.
+     *
+     * @param a the array to sort
+     * @param comp the comparator to compare array elements
+     */
+    public static <E> void bufferedSort(E[] a, Comparator<? super E> comp) {
+        bufferedSort(a, comp, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts an array on the given pool, using one auxiliary buffer for the
+     * whole sort. Each task merges between the array and the buffer within
+     * its own index range, so the hot path does not allocate.
+     *
+     * @param a the array to sort
+     * @param comp the comparator to compare array elements
+     * @param pool the pool that runs the sort tasks
+     */
+    public static <E> void bufferedSort(E[] a, Comparator<? super E> comp, ForkJoinPool pool) {
+        bufferedSort(a, comp, pool, SortOptions.DEFAULT);
+    }
+
+    /**
+     * Sorts an array on the given pool with one auxiliary buffer, tuned by
+     * the given options.
+     *
+     * @param a the array to sort
+     * @param comp the comparator to compare array elements
+     * @param pool the pool that runs the sort tasks
+     * @param options the small-range and merge options
+     */
+    public static <E> void bufferedSort(E[] a, Comparator<? super E> comp, ForkJoinPool pool,
+            SortOptions options) {
+        if (a.length < 2) {
+            return;
+        }
+        Object[] aux = a.clone();
+        pool.invoke(new BufferedSortTask<>(aux, a, 0, a.length - 1, comp, options,
+                sequentialCutoff(a.length, pool.getParallelism())));
     }
 
     /**
@@ -19,94 +133,864 @@ public class ParallelMergeSorter
      * @param from the first index of the range to sort
      * @param to the last index of the range to sort
      * @param comp the comparator to compare array elements
+     * @param numCores the number of worker threads to use
      */
     public static <E> void parallelMergeSort(E[] a, int from, int to,
             Comparator<? super E> comp, Integer numCores) {
+        if (from >= to) {
+            return;
+        }
+        if (numCores <= 1) {
+            MergeSorter.mergeSort(a, from, to, comp);
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(numCores);
+        try {
+            pool.invoke(new SortTask<>(a, from, to, comp, SortOptions.DEFAULT,
+                    sequentialCutoff(to - from + 1, numCores)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sorts an array of <CODE>int</CODE> values in ascending order on the
+     * common pool.
+     *
+     * @param a the array to sort
+     */
+    public static void sort(int[] a) {
+        sort(a, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts an array of <CODE>int</CODE> values in ascending order on the
+     * given pool.
+     *
+     * @param a the array to sort
+     * @param pool the pool that runs the sort tasks
+     */
+    public static void sort(int[] a, ForkJoinPool pool) {
+        if (a.length < 2) {
+            return;
+        }
+        pool.invoke(new IntSortTask(a, 0, a.length - 1, new int[a.length],
+                sequentialCutoff(a.length, pool.getParallelism())));
+    }
+
+    /**
+     * Sorts an array of <CODE>long</CODE> values in ascending order on the
+     * common pool.
+     *
+     * @param a the array to sort
+     */
+    public static void sort(long[] a) {
+        sort(a, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts an array of <CODE>long</CODE> values in ascending order on the
+     * given pool.
+     *
+     * @param a the array to sort
+     * @param pool the pool that runs the sort tasks
+     */
+    public static void sort(long[] a, ForkJoinPool pool) {
+        if (a.length < 2) {
+            return;
+        }
+        pool.invoke(new LongSortTask(a, 0, a.length - 1, new long[a.length],
+                sequentialCutoff(a.length, pool.getParallelism())));
+    }
+
+    /**
+     * Sorts an array of <CODE>float</CODE> values in ascending order on the
+     * common pool.
+     *
+     * @param a the array to sort
+     */
+    public static void sort(float[] a) {
+        sort(a, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts an array of <CODE>float</CODE> values in ascending order on the
+     * given pool.
+     *
+     * @param a the array to sort
+     * @param pool the pool that runs the sort tasks
+     */
+    public static void sort(float[] a, ForkJoinPool pool) {
+        if (a.length < 2) {
+            return;
+        }
+        pool.invoke(new FloatSortTask(a, 0, a.length - 1, new float[a.length],
+                sequentialCutoff(a.length, pool.getParallelism())));
+    }
+
+    /**
+     * Sorts an array of <CODE>double</CODE> values in ascending order on the
+     * common pool.
+     *
+     * @param a the array to sort
+     */
+    public static void sort(double[] a) {
+        sort(a, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts an array of <CODE>double</CODE> values in ascending order on the
+     * given pool.
+     *
+     * @param a the array to sort
+     * @param pool the pool that runs the sort tasks
+     */
+    public static void sort(double[] a, ForkJoinPool pool) {
+        if (a.length < 2) {
+            return;
+        }
+        pool.invoke(new DoubleSortTask(a, 0, a.length - 1, new double[a.length],
+                sequentialCutoff(a.length, pool.getParallelism())));
+    }
+
+    /**
+     * Returns the size below which a range is sorted sequentially, chosen so
+     * that every worker gets a few tasks to balance the load.
+     *
+     * @param n the number of elements to sort
+     * @param parallelism the number of worker threads
+     * @return the sequential cutoff
+     */
+    static int sequentialCutoff(int n, int parallelism) {
+        return Math.max(MIN_SEQUENTIAL_SIZE, n / (parallelism * TASKS_PER_THREAD));
+    }
+
+    /**
+     * Task that sorts a range of an array, forking both halves until the
+     * range is small enough to be sorted sequentially.
+     */
+    private static class SortTask<E> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final E[] a;
+        private final int from;
+        private final int to;
+        private final Comparator<? super E> comp;
+        private final SortOptions options;
+        private final int cutoff;
+
+        SortTask(E[] a, int from, int to, Comparator<? super E> comp,
+                SortOptions options, int cutoff) {
+            this.a = a;
+            this.from = from;
+            this.to = to;
+            this.comp = comp;
+            this.options = options;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from + 1 <= cutoff) {
+                MergeSorter.mergeSort(a, from, to, comp, options);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask<>(a, from, mid, comp, options, cutoff),
+                    new SortTask<>(a, mid + 1, to, comp, options, cutoff));
+            if (options.isSkipSortedMerge() && comp.compare(a[mid], a[mid + 1]) <= 0) {
+                return;
+            }
+            // Merge both halves into a temporary array in parallel, then copy back
+            Object[] b = new Object[to - from + 1];
+            new MergeTask<E>(a, from, mid, mid + 1, to, b, 0, comp, cutoff).compute();
+            System.arraycopy(b, 0, a, from, b.length);
+        }
+    }
+
+    /**
+     * Task that sorts a range of <CODE>src</CODE> into <CODE>dest</CODE>,
+     * sorting both halves into <CODE>src</CODE> before merging them back.
+     */
+    private static class BufferedSortTask<E> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object[] src;
+        private final Object[] dest;
+        private final int from;
+        private final int to;
+        private final Comparator<? super E> comp;
+        private final SortOptions options;
+        private final int cutoff;
+
+        BufferedSortTask(Object[] src, Object[] dest, int from, int to,
+                Comparator<? super E> comp, SortOptions options, int cutoff) {
+            this.src = src;
+            this.dest = dest;
+            this.from = from;
+            this.to = to;
+            this.comp = comp;
+            this.options = options;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void compute() {
+            if (to - from + 1 <= cutoff) {
+                MergeSorter.mergeSort(src, dest, from, to, comp, options);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BufferedSortTask<E>(dest, src, from, mid, comp, options, cutoff),
+                    new BufferedSortTask<E>(dest, src, mid + 1, to, comp, options, cutoff));
+            if (options.isSkipSortedMerge() && comp.compare((E) src[mid], (E) src[mid + 1]) <= 0) {
+                System.arraycopy(src, from, dest, from, to - from + 1);
+                return;
+            }
+            new MergeTask<E>(src, from, mid, mid + 1, to, dest, from, comp, cutoff).compute();
+        }
+    }
+
+    /**
+     * Task that sorts a range of an <CODE>int</CODE> array. All tasks of one
+     * sort share a scratch buffer, each using only its own index range.
+     */
+    private static class IntSortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
 
-    	int mid = (from + to)/2;
-            Runnable run1 = new Runnable(){
-			@Override
-			public void run(){
-				parallelMergeSort(a, from, mid, comp, numCores/2);
-			}
-		};
-		Runnable run2 = new Runnable(){
-			@Override
-			public void run(){
-				parallelMergeSort(a, mid + 1, to, comp, numCores/2);
-			}
-		};
-
-		if (numCores.equals(1)) {
-                    MergeSorter.mergeSort(a, from, to, comp);
+        private final int[] a;
+        private final int from;
+        private final int to;
+        private final int[] b;
+        private final int cutoff;
+
+        IntSortTask(int[] a, int from, int to, int[] b, int cutoff) {
+            this.a = a;
+            this.from = from;
+            this.to = to;
+            this.b = b;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from + 1 <= cutoff) {
+                MergeSorter.mergeSort(a, from, to, b);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new IntSortTask(a, from, mid, b, cutoff),
+                    new IntSortTask(a, mid + 1, to, b, cutoff));
+            // Merge both halves into the same range of the buffer in parallel, then copy back
+            new IntMergeTask(a, from, mid, mid + 1, to, b, from, cutoff).compute();
+            System.arraycopy(b, from, a, from, to - from + 1);
+        }
+    }
+
+    /**
+     * Task that sorts a range of a <CODE>long</CODE> array. All tasks of one
+     * sort share a scratch buffer, each using only its own index range.
+     */
+    private static class LongSortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] a;
+        private final int from;
+        private final int to;
+        private final long[] b;
+        private final int cutoff;
+
+        LongSortTask(long[] a, int from, int to, long[] b, int cutoff) {
+            this.a = a;
+            this.from = from;
+            this.to = to;
+            this.b = b;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from + 1 <= cutoff) {
+                MergeSorter.mergeSort(a, from, to, b);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new LongSortTask(a, from, mid, b, cutoff),
+                    new LongSortTask(a, mid + 1, to, b, cutoff));
+            // Merge both halves into the same range of the buffer in parallel, then copy back
+            new LongMergeTask(a, from, mid, mid + 1, to, b, from, cutoff).compute();
+            System.arraycopy(b, from, a, from, to - from + 1);
+        }
+    }
+
+    /**
+     * Task that sorts a range of a <CODE>float</CODE> array. All tasks of one
+     * sort share a scratch buffer, each using only its own index range.
+     */
+    private static class FloatSortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final float[] a;
+        private final int from;
+        private final int to;
+        private final float[] b;
+        private final int cutoff;
+
+        FloatSortTask(float[] a, int from, int to, float[] b, int cutoff) {
+            this.a = a;
+            this.from = from;
+            this.to = to;
+            this.b = b;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from + 1 <= cutoff) {
+                MergeSorter.mergeSort(a, from, to, b);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new FloatSortTask(a, from, mid, b, cutoff),
+                    new FloatSortTask(a, mid + 1, to, b, cutoff));
+            // Merge both halves into the same range of the buffer in parallel, then copy back
+            new FloatMergeTask(a, from, mid, mid + 1, to, b, from, cutoff).compute();
+            System.arraycopy(b, from, a, from, to - from + 1);
+        }
+    }
+
+    /**
+     * Task that sorts a range of a <CODE>double</CODE> array. All tasks of one
+     * sort share a scratch buffer, each using only its own index range.
+     */
+    private static class DoubleSortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] a;
+        private final int from;
+        private final int to;
+        private final double[] b;
+        private final int cutoff;
+
+        DoubleSortTask(double[] a, int from, int to, double[] b, int cutoff) {
+            this.a = a;
+            this.from = from;
+            this.to = to;
+            this.b = b;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from + 1 <= cutoff) {
+                MergeSorter.mergeSort(a, from, to, b);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new DoubleSortTask(a, from, mid, b, cutoff),
+                    new DoubleSortTask(a, mid + 1, to, b, cutoff));
+            // Merge both halves into the same range of the buffer in parallel, then copy back
+            new DoubleMergeTask(a, from, mid, mid + 1, to, b, from, cutoff).compute();
+            System.arraycopy(b, from, a, from, to - from + 1);
+        }
+    }
+
+    /**
+     * Task that merges two sorted ranges of <CODE>src</CODE> into
+     * <CODE>dest</CODE>. Large merges are split in two independent merges:
+     * the middle element of the longer range is located in the shorter range
+     * by binary search, and the elements on either side of that split point
+     * are merged concurrently. Equal elements keep their order.
+     */
+    private static class MergeTask<E> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object[] src;
+        private final int lo1;
+        private final int hi1;
+        private final int lo2;
+        private final int hi2;
+        private final Object[] dest;
+        private final int destFrom;
+        private final Comparator<? super E> comp;
+        private final int cutoff;
+
+        /**
+         * Constructor used to initialize the merge of src[lo1..hi1] and
+         * src[lo2..hi2], both inclusive and possibly empty, into dest
+         * starting at <CODE>destFrom</CODE>.
+         */
+        MergeTask(Object[] src, int lo1, int hi1, int lo2, int hi2,
+                Object[] dest, int destFrom, Comparator<? super E> comp, int cutoff) {
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dest = dest;
+            this.destFrom = destFrom;
+            this.comp = comp;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void compute() {
+            int n1 = hi1 - lo1 + 1;
+            int n2 = hi2 - lo2 + 1;
+            if (n1 + n2 <= cutoff) {
+                merge();
+                return;
+            }
+
+            int split1;
+            int split2;
+            if (n1 >= n2) {
+                // Elements of the second range equal to the pivot stay after it
+                split1 = (lo1 + hi1) >>> 1;
+                split2 = lowerBound((E) src[split1], lo2, hi2);
+            } else {
+                // Elements of the first range equal to the pivot stay before it
+                split2 = (lo2 + hi2) >>> 1;
+                split1 = upperBound((E) src[split2], lo1, hi1);
+            }
+            int destSplit = destFrom + (split1 - lo1) + (split2 - lo2);
+            invokeAll(new MergeTask<E>(src, lo1, split1 - 1, lo2, split2 - 1,
+                            dest, destFrom, comp, cutoff),
+                    new MergeTask<E>(src, split1, hi1, split2, hi2,
+                            dest, destSplit, comp, cutoff));
+        }
+
+        /**
+         * Returns the first index in src[lo..hi] whose element is not less
+         * than the key, or hi + 1 if there is none.
+         */
+        @SuppressWarnings("unchecked")
+        private int lowerBound(E key, int lo, int hi) {
+            hi++;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (comp.compare((E) src[mid], key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Returns the first index in src[lo..hi] whose element is greater
+         * than the key, or hi + 1 if there is none.
+         */
+        @SuppressWarnings("unchecked")
+        private int upperBound(E key, int lo, int hi) {
+            hi++;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (comp.compare((E) src[mid], key) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Merges the two ranges sequentially.
+         */
+        @SuppressWarnings("unchecked")
+        private void merge() {
+            int i1 = lo1;
+            int i2 = lo2;
+            int j = destFrom;
+            while (i1 <= hi1 && i2 <= hi2) {
+                if (comp.compare((E) src[i2], (E) src[i1]) < 0) {
+                    dest[j++] = src[i2++];
+                } else {
+                    dest[j++] = src[i1++];
+                }
+            }
+            System.arraycopy(src, i1, dest, j, hi1 - i1 + 1);
+            j += hi1 - i1 + 1;
+            System.arraycopy(src, i2, dest, j, hi2 - i2 + 1);
+        }
+    }
+
+    /**
+     * Task that merges two sorted ranges of a <CODE>int</CODE> array into
+     * another, splitting large merges in two as <CODE>MergeTask</CODE> does.
+     */
+    private static class IntMergeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src;
+        private final int lo1;
+        private final int hi1;
+        private final int lo2;
+        private final int hi2;
+        private final int[] dest;
+        private final int destFrom;
+        private final int cutoff;
+
+        IntMergeTask(int[] src, int lo1, int hi1, int lo2, int hi2,
+                int[] dest, int destFrom, int cutoff) {
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dest = dest;
+            this.destFrom = destFrom;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = hi1 - lo1 + 1;
+            int n2 = hi2 - lo2 + 1;
+            if (n1 + n2 <= cutoff) {
+                merge();
+                return;
+            }
+
+            int split1;
+            int split2;
+            if (n1 >= n2) {
+                split1 = (lo1 + hi1) >>> 1;
+                split2 = bound(src[split1], lo2, hi2, false);
+            } else {
+                split2 = (lo2 + hi2) >>> 1;
+                split1 = bound(src[split2], lo1, hi1, true);
+            }
+            int destSplit = destFrom + (split1 - lo1) + (split2 - lo2);
+            invokeAll(new IntMergeTask(src, lo1, split1 - 1, lo2, split2 - 1,
+                            dest, destFrom, cutoff),
+                    new IntMergeTask(src, split1, hi1, split2, hi2,
+                            dest, destSplit, cutoff));
+        }
+
+        /**
+         * Returns the first index in src[lo..hi] whose element is not less
+         * than the key, or if <CODE>upper</CODE> is set, greater than it; or
+         * hi + 1 if there is none.
+         */
+        private int bound(int key, int lo, int hi, boolean upper) {
+            hi++;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (upper ? src[mid] <= key : src[mid] < key) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Merges the two ranges sequentially.
+         */
+        private void merge() {
+            int i1 = lo1;
+            int i2 = lo2;
+            int j = destFrom;
+            while (i1 <= hi1 && i2 <= hi2) {
+                if (src[i1] <= src[i2]) {
+                    dest[j++] = src[i1++];
+                } else {
+                    dest[j++] = src[i2++];
                 }
-		else 
-		{
-                    Thread thread1 = new Thread(run1, "Thread 1");
-                    Thread thread2 = new Thread(run2, "Thread 2");
-
-                    thread1.start();
-                    thread2.start();
-
-                    try{
-			thread1.join();
-			thread2.join();
-                    }catch(InterruptedException e){}
-
-                    merge(a, from, mid, to, comp);
-		}
-	
-    }
-
-	@SuppressWarnings("unchecked")
-    private static <E> void merge(E[] a,
-            int from, int mid, int to, Comparator<? super E> comp) {
-        int n = to - from + 1;
-         // Size of the range to be merged
-
-        // Merge both halves into a temporary array b
-        Object[] b = new Object[n];
-
-        int i1 = from;
-        // Next element to consider in the first range
-        int i2 = mid + 1;
-        // Next element to consider in the second range
-        int j = 0;
-         // Next open position in b
-
-        // As long as neither i1 nor i2 past the end, move
-        // the smaller element into b
-        while (i1 <= mid && i2 <= to) {
-            if (comp.compare(a[i1], a[i2]) < 0) {
-                b[j] = a[i1];
-                i1++;
+            }
+            System.arraycopy(src, i1, dest, j, hi1 - i1 + 1);
+            j += hi1 - i1 + 1;
+            System.arraycopy(src, i2, dest, j, hi2 - i2 + 1);
+        }
+    }
+
+    /**
+     * Task that merges two sorted ranges of a <CODE>long</CODE> array into
+     * another, splitting large merges in two as <CODE>MergeTask</CODE> does.
+     */
+    private static class LongMergeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] src;
+        private final int lo1;
+        private final int hi1;
+        private final int lo2;
+        private final int hi2;
+        private final long[] dest;
+        private final int destFrom;
+        private final int cutoff;
+
+        LongMergeTask(long[] src, int lo1, int hi1, int lo2, int hi2,
+                long[] dest, int destFrom, int cutoff) {
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dest = dest;
+            this.destFrom = destFrom;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = hi1 - lo1 + 1;
+            int n2 = hi2 - lo2 + 1;
+            if (n1 + n2 <= cutoff) {
+                merge();
+                return;
+            }
+
+            int split1;
+            int split2;
+            if (n1 >= n2) {
+                split1 = (lo1 + hi1) >>> 1;
+                split2 = bound(src[split1], lo2, hi2, false);
             } else {
-                b[j] = a[i2];
-                i2++;
+                split2 = (lo2 + hi2) >>> 1;
+                split1 = bound(src[split2], lo1, hi1, true);
             }
-            j++;
+            int destSplit = destFrom + (split1 - lo1) + (split2 - lo2);
+            invokeAll(new LongMergeTask(src, lo1, split1 - 1, lo2, split2 - 1,
+                            dest, destFrom, cutoff),
+                    new LongMergeTask(src, split1, hi1, split2, hi2,
+                            dest, destSplit, cutoff));
         }
 
-        // Note that only one of the two while loops
-        // below is executed
-        // Copy any remaining entries of the first half
-        while (i1 <= mid) {
-            b[j] = a[i1];
-            i1++;
-            j++;
+        /**
+         * Returns the first index in src[lo..hi] whose element is not less
+         * than the key, or if <CODE>upper</CODE> is set, greater than it; or
+         * hi + 1 if there is none.
+         */
+        private int bound(long key, int lo, int hi, boolean upper) {
+            hi++;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (upper ? src[mid] <= key : src[mid] < key) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
         }
 
-        // Copy any remaining entries of the second half
-        while (i2 <= to) {
-            b[j] = a[i2];
-            i2++;
-            j++;
+        /**
+         * Merges the two ranges sequentially.
+         */
+        private void merge() {
+            int i1 = lo1;
+            int i2 = lo2;
+            int j = destFrom;
+            while (i1 <= hi1 && i2 <= hi2) {
+                if (src[i1] <= src[i2]) {
+                    dest[j++] = src[i1++];
+                } else {
+                    dest[j++] = src[i2++];
+                }
+            }
+            System.arraycopy(src, i1, dest, j, hi1 - i1 + 1);
+            j += hi1 - i1 + 1;
+            System.arraycopy(src, i2, dest, j, hi2 - i2 + 1);
         }
+    }
 
-        // Copy back from the temporary array
-        for (j = 0; j < n; j++) {
-            a[from + j] = (E) b[j];
+    /**
+     * Task that merges two sorted ranges of a <CODE>float</CODE> array into
+     * another, splitting large merges in two as <CODE>MergeTask</CODE> does, ordered as by <CODE>Float.compare</CODE>.
+     */
+    private static class FloatMergeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final float[] src;
+        private final int lo1;
+        private final int hi1;
+        private final int lo2;
+        private final int hi2;
+        private final float[] dest;
+        private final int destFrom;
+        private final int cutoff;
+
+        FloatMergeTask(float[] src, int lo1, int hi1, int lo2, int hi2,
+                float[] dest, int destFrom, int cutoff) {
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dest = dest;
+            this.destFrom = destFrom;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = hi1 - lo1 + 1;
+            int n2 = hi2 - lo2 + 1;
+            if (n1 + n2 <= cutoff) {
+                merge();
+                return;
+            }
+
+            int split1;
+            int split2;
+            if (n1 >= n2) {
+                split1 = (lo1 + hi1) >>> 1;
+                split2 = bound(src[split1], lo2, hi2, false);
+            } else {
+                split2 = (lo2 + hi2) >>> 1;
+                split1 = bound(src[split2], lo1, hi1, true);
+            }
+            int destSplit = destFrom + (split1 - lo1) + (split2 - lo2);
+            invokeAll(new FloatMergeTask(src, lo1, split1 - 1, lo2, split2 - 1,
+                            dest, destFrom, cutoff),
+                    new FloatMergeTask(src, split1, hi1, split2, hi2,
+                            dest, destSplit, cutoff));
+        }
+
+        /**
+         * Returns the first index in src[lo..hi] whose element is not less
+         * than the key, or if <CODE>upper</CODE> is set, greater than it; or
+         * hi + 1 if there is none.
+         */
+        private int bound(float key, int lo, int hi, boolean upper) {
+            hi++;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (upper ? Float.compare(src[mid], key) <= 0 : Float.compare(src[mid], key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Merges the two ranges sequentially.
+         */
+        private void merge() {
+            int i1 = lo1;
+            int i2 = lo2;
+            int j = destFrom;
+            while (i1 <= hi1 && i2 <= hi2) {
+                if (Float.compare(src[i1], src[i2]) <= 0) {
+                    dest[j++] = src[i1++];
+                } else {
+                    dest[j++] = src[i2++];
+                }
+            }
+            System.arraycopy(src, i1, dest, j, hi1 - i1 + 1);
+            j += hi1 - i1 + 1;
+            System.arraycopy(src, i2, dest, j, hi2 - i2 + 1);
+        }
+    }
+
+    /**
+     * Task that merges two sorted ranges of a <CODE>double</CODE> array into
+     * another, splitting large merges in two as <CODE>MergeTask</CODE> does, ordered as by <CODE>Double.compare</CODE>.
+     */
+    private static class DoubleMergeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] src;
+        private final int lo1;
+        private final int hi1;
+        private final int lo2;
+        private final int hi2;
+        private final double[] dest;
+        private final int destFrom;
+        private final int cutoff;
+
+        DoubleMergeTask(double[] src, int lo1, int hi1, int lo2, int hi2,
+                double[] dest, int destFrom, int cutoff) {
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dest = dest;
+            this.destFrom = destFrom;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = hi1 - lo1 + 1;
+            int n2 = hi2 - lo2 + 1;
+            if (n1 + n2 <= cutoff) {
+                merge();
+                return;
+            }
+
+            int split1;
+            int split2;
+            if (n1 >= n2) {
+                split1 = (lo1 + hi1) >>> 1;
+                split2 = bound(src[split1], lo2, hi2, false);
+            } else {
+                split2 = (lo2 + hi2) >>> 1;
+                split1 = bound(src[split2], lo1, hi1, true);
+            }
+            int destSplit = destFrom + (split1 - lo1) + (split2 - lo2);
+            invokeAll(new DoubleMergeTask(src, lo1, split1 - 1, lo2, split2 - 1,
+                            dest, destFrom, cutoff),
+                    new DoubleMergeTask(src, split1, hi1, split2, hi2,
+                            dest, destSplit, cutoff));
+        }
+
+        /**
+         * Returns the first index in src[lo..hi] whose element is not less
+         * than the key, or if <CODE>upper</CODE> is set, greater than it; or
+         * hi + 1 if there is none.
+         */
+        private int bound(double key, int lo, int hi, boolean upper) {
+            hi++;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (upper ? Double.compare(src[mid], key) <= 0 : Double.compare(src[mid], key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Merges the two ranges sequentially.
+         */
+        private void merge() {
+            int i1 = lo1;
+            int i2 = lo2;
+            int j = destFrom;
+            while (i1 <= hi1 && i2 <= hi2) {
+                if (Double.compare(src[i1], src[i2]) <= 0) {
+                    dest[j++] = src[i1++];
+                } else {
+                    dest[j++] = src[i2++];
+                }
+            }
+            System.arraycopy(src, i1, dest, j, hi1 - i1 + 1);
+            j += hi1 - i1 + 1;
+            System.arraycopy(src, i2, dest, j, hi2 - i2 + 1);
         }
     }
-	
 }
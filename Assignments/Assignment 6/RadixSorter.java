@@ -0,0 +1,370 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * This class carries out a parallel least-significant-digit radix sort on
+ * integer keys. The keys are sorted one 8-bit digit at a time, starting
+ * with the lowest. In each pass the array is cut into one chunk per task.
+ * Every chunk counts its digits into its own histogram, so no counts are
+ * shared between threads. A prefix sum over all histograms gives each chunk
+ * its write positions, and then every chunk scatters its elements in
+ * parallel. Each pass is stable, so object arrays sorted by a key keep the
+ * order of elements with equal keys.
+ */
+public class RadixSorter {
+
+    private static final int DIGIT_BITS = 8;
+    private static final int BUCKETS = 1 << DIGIT_BITS;
+    private static final int DIGIT_MASK = BUCKETS - 1;
+
+    /**
+     * Arrays up to this size are sorted by a single task.
+     */
+    static final int MIN_PARALLEL_SIZE = 1 << 16;
+
+    /**
+     * Number of chunks created per worker thread.
+     */
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    /**
+     * Sorts an array of <CODE>int</CODE> values in ascending order on the
+     * common pool.
+     *
+     * @param a the array to sort
+     */
+    public static void sort(int[] a) {
+        sort(a, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts an array of <CODE>int</CODE> values in ascending order on the
+     * given pool.
+     *
+     * @param a the array to sort
+     * @param pool the pool that runs the counting and scattering tasks
+     */
+    public static void sort(int[] a, ForkJoinPool pool) {
+        radixSort(a, null, pool);
+    }
+
+    /**
+     * Sorts an array of <CODE>long</CODE> values in ascending order on the
+     * common pool.
+     *
+     * @param a the array to sort
+     */
+    public static void sort(long[] a) {
+        sort(a, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts an array of <CODE>long</CODE> values in ascending order on the
+     * given pool.
+     *
+     * @param a the array to sort
+     * @param pool the pool that runs the counting and scattering tasks
+     */
+    public static void sort(long[] a, ForkJoinPool pool) {
+        radixSort(a, null, pool);
+    }
+
+    /**
+     * Sorts an array of objects by an <CODE>int</CODE> key, such as a
+     * customer ID or a price in cents, on the common pool. Each key is
+     * extracted once. Elements with equal keys keep their order.
+     *
+     * @param a the array to sort
+     * @param key the function that extracts the sort key
+     */
+    public static <E> void sortByIntKey(E[] a, ToIntFunction<? super E> key) {
+        sortByIntKey(a, key, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts an array of objects by an <CODE>int</CODE> key on the given pool.
+     *
+     * @param a the array to sort
+     * @param key the function that extracts the sort key
+     * @param pool the pool that runs the sort tasks
+     */
+    public static <E> void sortByIntKey(E[] a, ToIntFunction<? super E> key, ForkJoinPool pool) {
+        int[] keys = new int[a.length];
+        forEachChunk(pool, a.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                keys[i] = key.applyAsInt(a[i]);
+            }
+        });
+        radixSort(keys, a, pool);
+    }
+
+    /**
+     * Sorts an array of objects by a <CODE>long</CODE> key on the common
+     * pool. Each key is extracted once. Elements with equal keys keep their
+     * order.
+     *
+     * @param a the array to sort
+     * @param key the function that extracts the sort key
+     */
+    public static <E> void sortByLongKey(E[] a, ToLongFunction<? super E> key) {
+        sortByLongKey(a, key, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sorts an array of objects by a <CODE>long</CODE> key on the given pool.
+     *
+     * @param a the array to sort
+     * @param key the function that extracts the sort key
+     * @param pool the pool that runs the sort tasks
+     */
+    public static <E> void sortByLongKey(E[] a, ToLongFunction<? super E> key, ForkJoinPool pool) {
+        long[] keys = new long[a.length];
+        forEachChunk(pool, a.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                keys[i] = key.applyAsLong(a[i]);
+            }
+        });
+        radixSort(keys, a, pool);
+    }
+
+    /**
+     * Sorts the keys, moving the values (if not null) along with them.
+     *
+     * @param keys the keys to sort
+     * @param values the values to move with the keys, or null
+     * @param pool the pool that runs the counting and scattering tasks
+     */
+    private static void radixSort(int[] keys, Object[] values, ForkJoinPool pool) {
+        int n = keys.length;
+        if (n < 2) {
+            return;
+        }
+        int chunks = chunkCount(n, pool);
+        int[][] counts = new int[chunks][BUCKETS];
+
+        int[] src = keys;
+        int[] dst = new int[n];
+        Object[] srcValues = values;
+        Object[] dstValues = values == null ? null : new Object[n];
+
+        for (int shift = 0; shift < Integer.SIZE; shift += DIGIT_BITS) {
+            // Flip the sign bit in the top digit so negative keys sort first
+            final int digitShift = shift;
+            final int flip = shift == Integer.SIZE - DIGIT_BITS ? BUCKETS >>> 1 : 0;
+            final int[] from = src;
+            final int[] to = dst;
+            final Object[] fromValues = srcValues;
+            final Object[] toValues = dstValues;
+
+            forEachChunk(pool, chunks, n, (c, lo, hi) -> {
+                int[] count = counts[c];
+                Arrays.fill(count, 0);
+                for (int i = lo; i < hi; i++) {
+                    count[((from[i] >>> digitShift) & DIGIT_MASK) ^ flip]++;
+                }
+            });
+            if (!prefixSum(counts, n)) {
+                continue; // every key has the same digit, nothing moves
+            }
+            forEachChunk(pool, chunks, n, (c, lo, hi) -> {
+                int[] offset = counts[c];
+                if (fromValues == null) {
+                    for (int i = lo; i < hi; i++) {
+                        to[offset[((from[i] >>> digitShift) & DIGIT_MASK) ^ flip]++] = from[i];
+                    }
+                } else {
+                    for (int i = lo; i < hi; i++) {
+                        int pos = offset[((from[i] >>> digitShift) & DIGIT_MASK) ^ flip]++;
+                        to[pos] = from[i];
+                        toValues[pos] = fromValues[i];
+                    }
+                }
+            });
+
+            src = to;
+            dst = from;
+            srcValues = toValues;
+            dstValues = fromValues;
+        }
+
+        if (src != keys) {
+            System.arraycopy(src, 0, keys, 0, n);
+            if (values != null) {
+                System.arraycopy(srcValues, 0, values, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Sorts the keys, moving the values (if not null) along with them.
+     *
+     * @param keys the keys to sort
+     * @param values the values to move with the keys, or null
+     * @param pool the pool that runs the counting and scattering tasks
+     */
+    private static void radixSort(long[] keys, Object[] values, ForkJoinPool pool) {
+        int n = keys.length;
+        if (n < 2) {
+            return;
+        }
+        int chunks = chunkCount(n, pool);
+        int[][] counts = new int[chunks][BUCKETS];
+
+        long[] src = keys;
+        long[] dst = new long[n];
+        Object[] srcValues = values;
+        Object[] dstValues = values == null ? null : new Object[n];
+
+        for (int shift = 0; shift < Long.SIZE; shift += DIGIT_BITS) {
+            // Flip the sign bit in the top digit so negative keys sort first
+            final int digitShift = shift;
+            final int flip = shift == Long.SIZE - DIGIT_BITS ? BUCKETS >>> 1 : 0;
+            final long[] from = src;
+            final long[] to = dst;
+            final Object[] fromValues = srcValues;
+            final Object[] toValues = dstValues;
+
+            forEachChunk(pool, chunks, n, (c, lo, hi) -> {
+                int[] count = counts[c];
+                Arrays.fill(count, 0);
+                for (int i = lo; i < hi; i++) {
+                    count[((int) (from[i] >>> digitShift) & DIGIT_MASK) ^ flip]++;
+                }
+            });
+            if (!prefixSum(counts, n)) {
+                continue; // every key has the same digit, nothing moves
+            }
+            forEachChunk(pool, chunks, n, (c, lo, hi) -> {
+                int[] offset = counts[c];
+                if (fromValues == null) {
+                    for (int i = lo; i < hi; i++) {
+                        to[offset[((int) (from[i] >>> digitShift) & DIGIT_MASK) ^ flip]++] = from[i];
+                    }
+                } else {
+                    for (int i = lo; i < hi; i++) {
+                        int pos = offset[((int) (from[i] >>> digitShift) & DIGIT_MASK) ^ flip]++;
+                        to[pos] = from[i];
+                        toValues[pos] = fromValues[i];
+                    }
+                }
+            });
+
+            src = to;
+            dst = from;
+            srcValues = toValues;
+            dstValues = fromValues;
+        }
+
+        if (src != keys) {
+            System.arraycopy(src, 0, keys, 0, n);
+            if (values != null) {
+                System.arraycopy(srcValues, 0, values, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Turns the per-chunk digit counts into per-chunk write offsets, in
+     * digit-major, chunk-minor order so the scatter stays stable.
+     *
+     * @param counts the digit counts of every chunk, replaced by offsets
+     * @param n the total number of keys
+     * @return false if all keys share one digit, so the pass can be skipped
+     */
+    private static boolean prefixSum(int[][] counts, int n) {
+        int sum = 0;
+        for (int d = 0; d < BUCKETS; d++) {
+            int digitTotal = 0;
+            for (int[] count : counts) {
+                int c = count[d];
+                count[d] = sum;
+                sum += c;
+                digitTotal += c;
+            }
+            if (digitTotal == n) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of chunks to cut an array of the given length into.
+     */
+    private static int chunkCount(int n, ForkJoinPool pool) {
+        if (n <= MIN_PARALLEL_SIZE) {
+            return 1;
+        }
+        int maxChunks = (n + MIN_PARALLEL_SIZE - 1) / MIN_PARALLEL_SIZE;
+        return Math.max(1, Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, maxChunks));
+    }
+
+    /**
+     * Code run on one chunk of an array.
+     */
+    private interface ChunkBody {
+        void run(int chunk, int from, int to);
+    }
+
+    /**
+     * Code run on one index range of an array.
+     */
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * Runs the body on each range of an array of the given length, split
+     * into chunks the way the sort passes split it.
+     */
+    private static void forEachChunk(ForkJoinPool pool, int n, RangeBody body) {
+        forEachChunk(pool, chunkCount(n, pool), n, (c, lo, hi) -> body.run(lo, hi));
+    }
+
+    /**
+     * Runs the body on each of <CODE>chunks</CODE> equal ranges of an array of
+     * length <CODE>n</CODE>, in parallel when there is more than one chunk.
+     */
+    private static void forEachChunk(ForkJoinPool pool, int chunks, int n, ChunkBody body) {
+        IntConsumer chunk = c -> body.run(c,
+                (int) ((long) n * c / chunks), (int) ((long) n * (c + 1) / chunks));
+        if (chunks == 1) {
+            chunk.accept(0);
+        } else {
+            pool.invoke(new ChunkTask(0, chunks, chunk));
+        }
+    }
+
+    /**
+     * Task that runs a chunk body on a range of chunk numbers, splitting the
+     * range until each task handles one chunk.
+     */
+    private static class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer chunk;
+
+        ChunkTask(int from, int to, IntConsumer chunk) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                chunk.accept(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(from, mid, chunk), new ChunkTask(mid, to, chunk));
+        }
+    }
+}
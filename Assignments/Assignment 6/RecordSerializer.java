@@ -0,0 +1,31 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes records to and reads them from a binary stream, so that
+ * <CODE>ExternalMergeSorter</CODE> can spill them to disk. A record read back
+ * must compare equal to the record that was written.
+ *
+ * @param <E> the type of the records
+ */
+public interface RecordSerializer<E> {
+
+    /**
+     * Writes one record to the stream.
+     *
+     * @param out the stream to write to
+     * @param record the record to write
+     * @throws IOException if the record cannot be written
+     */
+    void write(DataOutput out, E record) throws IOException;
+
+    /**
+     * Reads one record from the stream.
+     *
+     * @param in the stream to read from
+     * @return the record
+     * @throws IOException if the record cannot be read
+     */
+    E read(DataInput in) throws IOException;
+}
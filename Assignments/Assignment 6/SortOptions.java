@@ -0,0 +1,68 @@
+/**
+ * This class holds the tuning options of the merge sorters. An options
+ * object cannot be changed once created, so the shared constants can be
+ * passed to any number of concurrent sorts.
+ */
+public class SortOptions {
+
+    /**
+     * The default size at or below which a range is insertion sorted.
+     */
+    public static final int DEFAULT_INSERTION_SORT_THRESHOLD = 16;
+
+    /**
+     * The options used when none are given: insertion sort for ranges of up
+     * to 16 elements, and no merge when the two halves are already in order.
+     */
+    public static final SortOptions DEFAULT =
+            new SortOptions(DEFAULT_INSERTION_SORT_THRESHOLD, true);
+
+    /**
+     * Options for the textbook merge sort, which recurses down to single
+     * elements and always merges.
+     */
+    public static final SortOptions CLASSIC = new SortOptions(1, false);
+
+    private final int insertionSortThreshold;
+    private final boolean skipSortedMerge;
+
+    /**
+     * Constructor used to initialize the options.
+     *
+     * @param insertionSortThreshold ranges of at most this many elements are
+     * sorted with insertion sort instead of being split further; 1 disables
+     * insertion sort
+     * @param skipSortedMerge if true, the merge of two sorted halves is
+     * skipped when the last element of the first half is not greater than
+     * the first element of the second half
+     */
+    public SortOptions(int insertionSortThreshold, boolean skipSortedMerge) {
+        if (insertionSortThreshold < 1) {
+            throw new IllegalArgumentException("Insertion sort threshold must be at least 1.");
+        }
+        this.insertionSortThreshold = insertionSortThreshold;
+        this.skipSortedMerge = skipSortedMerge;
+    }
+
+    /**
+     * Get the size at or below which a range is insertion sorted.
+     * @return insertionSortThreshold
+     */
+    public int getInsertionSortThreshold() {
+        return insertionSortThreshold;
+    }
+
+    /**
+     * Get whether merges of halves that are already in order are skipped.
+     * @return skipSortedMerge
+     */
+    public boolean isSkipSortedMerge() {
+        return skipSortedMerge;
+    }
+
+    @Override
+    public String toString() {
+        return "SortOptions{" + "insertionSortThreshold=" + insertionSortThreshold
+                + ", skipSortedMerge=" + skipSortedMerge + '}';
+    }
+}
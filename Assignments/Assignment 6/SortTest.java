@@ -1,11 +1,26 @@
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 public class SortTest {
 
     public static void main(String[] args) {
         runSortTest();
+        runPrimitiveSortTest();
+        runAdaptiveSortTest();
+        runOptionsSortTest();
+        runRadixSortTest();
+        runExternalSortTest();
+        runKeySortTest();
     }
 
     public static void runSortTest() {
@@ -37,9 +52,233 @@ public class SortTest {
                 System.out.printf("%10d elements  =>  %6d ms \n", LENGTH, endTime - startTime);
                 LENGTH = LENGTH*2;
             }
-            numCoresUsed = numCoresUsed*2;
+            if (numCoresUsed.equals(numCores)) {
+                break;
+            }
+            // Double the thread count, but always finish with every core
+            numCoresUsed = Math.min(numCoresUsed*2, numCores);
+        }
+    }
+    public static void runPrimitiveSortTest() {
+        Integer numCores = Runtime.getRuntime().availableProcessors();
+
+        // same sweep as runSortTest, on unboxed int[] with natural ordering
+        Integer numCoresUsed = 1;
+
+        while( numCoresUsed <= numCores ){
+            int LENGTH = 1000;
+            System.out.println(numCoresUsed + " threads (int[]):" + '\n');
+            ForkJoinPool pool = new ForkJoinPool(numCoresUsed);
+            for (int i = 0; i < 15; i++){
+                int[] a = createRandomIntArray(LENGTH);
+
+                long startTime = System.currentTimeMillis();
+                ParallelMergeSorter.sort(a, pool);
+                long endTime = System.currentTimeMillis();
+
+                if (!isSorted(a)) {
+                    throw new RuntimeException("not sorted afterward: " + Arrays.toString(a));
+                }
+
+                System.out.printf("%10d elements  =>  %6d ms \n", LENGTH, endTime - startTime);
+                LENGTH = LENGTH*2;
+            }
+            pool.shutdown();
+            if (numCoresUsed.equals(numCores)) {
+                break;
+            }
+            numCoresUsed = Math.min(numCoresUsed*2, numCores);
+        }
+    }
+
+    public static void runRadixSortTest() {
+        Integer numCores = Runtime.getRuntime().availableProcessors();
+
+        // same sweep as runPrimitiveSortTest, with radix sort instead of merge sort
+        Integer numCoresUsed = 1;
+
+        while( numCoresUsed <= numCores ){
+            int LENGTH = 1000;
+            System.out.println(numCoresUsed + " threads (int[], radix):" + '\n');
+            ForkJoinPool pool = new ForkJoinPool(numCoresUsed);
+            for (int i = 0; i < 15; i++){
+                int[] a = createRandomIntArray(LENGTH);
+
+                long startTime = System.currentTimeMillis();
+                RadixSorter.sort(a, pool);
+                long endTime = System.currentTimeMillis();
+
+                if (!isSorted(a)) {
+                    throw new RuntimeException("not sorted afterward: " + Arrays.toString(a));
+                }
+
+                System.out.printf("%10d elements  =>  %6d ms \n", LENGTH, endTime - startTime);
+                LENGTH = LENGTH*2;
+            }
+            pool.shutdown();
+            if (numCoresUsed.equals(numCores)) {
+                break;
+            }
+            numCoresUsed = Math.min(numCoresUsed*2, numCores);
+        }
+    }
+    public static void runAdaptiveSortTest() {
+        Comparator<Integer> comp = new Comparator<Integer>() {
+            public int compare(Integer d1, Integer d2) {
+                return d1.compareTo(d2);
+            }
+        };
+
+        // compare the plain and the adaptive merge sort on presorted inputs
+        String[] orders = {"random", "sorted", "reversed", "1% shuffled"};
+
+        for (String order : orders) {
+            System.out.println(order + " input (merge sort vs adaptive):" + '\n');
+            int LENGTH = 1000;
+            for (int i = 0; i < 8; i++){
+                Integer[] a = createOrderedArray(LENGTH, order);
+                Integer[] b = a.clone();
+
+                long startTime = System.currentTimeMillis();
+                MergeSorter.sort(a, comp);
+                long mergeTime = System.currentTimeMillis() - startTime;
+
+                startTime = System.currentTimeMillis();
+                MergeSorter.adaptiveSort(b, comp);
+                long adaptiveTime = System.currentTimeMillis() - startTime;
+
+                if (!isSorted(b, comp)) {
+                    throw new RuntimeException("not sorted afterward: " + Arrays.toString(b));
+                }
+
+                System.out.printf("%10d elements  =>  %6d ms  %6d ms \n", LENGTH, mergeTime, adaptiveTime);
+                LENGTH = LENGTH*4;
+            }
+        }
+    }
+
+    public static void runOptionsSortTest() {
+        Comparator<Integer> comp = new Comparator<Integer>() {
+            public int compare(Integer d1, Integer d2) {
+                return d1.compareTo(d2);
+            }
+        };
+
+        // compare the textbook merge sort with the insertion sort cutoff
+        // and skipped merges of the default options
+        System.out.println("classic vs " + SortOptions.DEFAULT + ":" + '\n');
+        int LENGTH = 1000;
+        for (int i = 0; i < 15; i++){
+            Integer[] a = createRandomArray(LENGTH);
+            Integer[] b = a.clone();
+            Integer[] expected = a.clone();
+            Arrays.sort(expected, comp);
+
+            long startTime = System.currentTimeMillis();
+            MergeSorter.sort(a, comp, SortOptions.CLASSIC);
+            long classicTime = System.currentTimeMillis() - startTime;
+
+            startTime = System.currentTimeMillis();
+            MergeSorter.sort(b, comp, SortOptions.DEFAULT);
+            long tunedTime = System.currentTimeMillis() - startTime;
+
+            if (!isSorted(a, comp) || !Arrays.equals(a, expected)) {
+                throw new RuntimeException("classic sort gave the wrong order: " + Arrays.toString(a));
+            }
+            if (!isSorted(b, comp) || !Arrays.equals(b, expected)) {
+                throw new RuntimeException("not sorted afterward: " + Arrays.toString(b));
+            }
+
+            System.out.printf("%10d elements  =>  %6d ms  %6d ms  (%.2fx) \n", LENGTH,
+                    classicTime, tunedTime, (double) Math.max(classicTime, 1) / Math.max(tunedTime, 1));
+            LENGTH = LENGTH*2;
         }
     }
+
+    public static void runExternalSortTest() {
+        Comparator<Integer> comp = new Comparator<Integer>() {
+            public int compare(Integer d1, Integer d2) {
+                return d1.compareTo(d2);
+            }
+        };
+        RecordSerializer<Integer> serializer = new RecordSerializer<Integer>() {
+            public void write(DataOutput out, Integer record) throws IOException {
+                out.writeInt(record);
+            }
+            public Integer read(DataInput in) throws IOException {
+                return in.readInt();
+            }
+        };
+
+        // sort with chunks much smaller than the input, so the runs are
+        // spilled to disk and merged back
+        System.out.println("external (chunks of 65536):" + '\n');
+        ExternalMergeSorter<Integer> sorter = new ExternalMergeSorter<>(serializer, comp,
+                65536, null, ForkJoinPool.commonPool());
+        int LENGTH = 1000;
+        for (int i = 0; i < 13; i++){
+            Integer[] a = createRandomArray(LENGTH);
+            try {
+                File output = File.createTempFile("sorttest", ".bin");
+                try {
+                    long startTime = System.currentTimeMillis();
+                    sorter.sort(Arrays.asList(a).iterator(), output);
+                    long endTime = System.currentTimeMillis();
+
+                    try (DataInputStream in = new DataInputStream(
+                            new BufferedInputStream(new FileInputStream(output)))) {
+                        for (int j = 0; j < LENGTH; j++) {
+                            a[j] = serializer.read(in);
+                        }
+                    }
+                    if (!isSorted(a, comp)) {
+                        throw new RuntimeException("not sorted afterward: " + Arrays.toString(a));
+                    }
+                    System.out.printf("%10d elements  =>  %6d ms \n", LENGTH, endTime - startTime);
+                } finally {
+                    output.delete();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            LENGTH = LENGTH*2;
+        }
+    }
+
+    public static void runKeySortTest() {
+        // sort by a derived key, once with a comparator that computes the key
+        // on every comparison and once with the keys cached by sortByKey
+        Comparator<Integer> keyComp = new Comparator<Integer>() {
+            public int compare(Integer d1, Integer d2) {
+                return Integer.toString(d1).compareTo(Integer.toString(d2));
+            }
+        };
+        Comparator<String> comp = Comparator.naturalOrder();
+
+        System.out.println("key comparator vs sortByKey:" + '\n');
+        int LENGTH = 1000;
+        for (int i = 0; i < 12; i++){
+            Integer[] a = createRandomArray(LENGTH);
+            Integer[] b = a.clone();
+
+            long startTime = System.currentTimeMillis();
+            MergeSorter.sort(a, keyComp);
+            long comparatorTime = System.currentTimeMillis() - startTime;
+
+            startTime = System.currentTimeMillis();
+            MergeSorter.sortByKey(b, d -> Integer.toString(d), comp);
+            long cachedTime = System.currentTimeMillis() - startTime;
+
+            if (!isSorted(b, keyComp)) {
+                throw new RuntimeException("not sorted afterward: " + Arrays.toString(b));
+            }
+
+            System.out.printf("%10d elements  =>  %6d ms  %6d ms  (%.2fx) \n", LENGTH,
+                    comparatorTime, cachedTime, (double) Math.max(comparatorTime, 1) / Math.max(cachedTime, 1));
+            LENGTH = LENGTH*2;
+        }
+    }
+
     /**
      * Returns true if the given array is in sorted ascending order.
      *
@@ -57,6 +296,22 @@ public class SortTest {
         return true;
     }
 
+    /**
+     * Returns true if the given int array is in sorted ascending order.
+     *
+     * @param a the array to examine
+     * @return true if the given array is sorted, false otherwise
+     */
+    public static boolean isSorted(int[] a) {
+        for (int i = 0; i < a.length - 1; i++) {
+            if (a[i] > a[i + 1]) {
+                System.out.println(a[i] + " > " + a[i + 1]);
+                return false;
+            }
+        }
+        return true;
+    }
+
     // Randomly rearranges the elements of the given array.
     public static <E> void shuffle(E[] a) {
         for (int i = 0; i < a.length; i++) {
@@ -85,4 +340,37 @@ public class SortTest {
         }
         return a;
     }
+
+    // Creates an int array of the given length, fills it with random
+    // non-negative integers, and returns it.
+    public static int[] createRandomIntArray(int length) {
+        int[] a = new int[length];
+        Random rand = new Random(System.currentTimeMillis());
+        for (int i = 0; i < a.length; i++) {
+            a[i] = rand.nextInt(1000000);
+        }
+        return a;
+    }
+
+    // Creates an array of the given length in the given order: "random",
+    // "sorted", "reversed" or "1% shuffled" (sorted, then 1% of the
+    // elements swapped with random positions).
+    public static Integer[] createOrderedArray(int length, String order) {
+        Integer[] a = createRandomArray(length);
+        if (order.equals("random")) {
+            return a;
+        }
+        Arrays.sort(a);
+        if (order.equals("reversed")) {
+            for (int i = 0; i < length / 2; i++) {
+                swap(a, i, length - 1 - i);
+            }
+        } else if (order.equals("1% shuffled")) {
+            Random rand = new Random(System.currentTimeMillis());
+            for (int i = 0; i < length / 100; i++) {
+                swap(a, rand.nextInt(length), rand.nextInt(length));
+            }
+        }
+        return a;
+    }
 }
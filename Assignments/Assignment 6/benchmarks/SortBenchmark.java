@@ -0,0 +1,264 @@
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for <CODE>MergeSorter</CODE>,
+ * <CODE>ParallelMergeSorter</CODE> and <CODE>RadixSorter</CODE>. Unlike
+ * <CODE>SortTest</CODE>, every configuration is warmed up, measured several
+ * times in separate JVMs and fed with data from a fixed seed, so results can
+ * be compared between builds.
+ *
+ * Each benchmark sorts a fresh copy of the same input. The copy is made in
+ * an invocation-level setup, so it is not part of the measured time. Only the
+ * parallel benchmarks take the <CODE>threads</CODE> parameter, so the
+ * sequential sort is measured once per input rather than once per pool size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SortBenchmark {
+
+    /**
+     * Seed for the input data, so every run sorts the same arrays.
+     */
+    private static final long SEED = 3354L;
+
+    private static final Comparator<Integer> COMP = new Comparator<Integer>() {
+        public int compare(Integer d1, Integer d2) {
+            return d1.compareTo(d2);
+        }
+    };
+
+    /**
+     * The values to sort, created once per trial.
+     */
+    public abstract static class Input {
+
+        @Param({"1000", "64000", "1024000", "16384000"})
+        public int size;
+
+        @Param({"random", "sorted", "reversed", "fewUnique"})
+        public String distribution;
+
+        int[] source;
+
+        @Setup(Level.Trial)
+        public void createSource() {
+            source = createArray(size, distribution);
+        }
+    }
+
+    /**
+     * The values as either <CODE>Integer</CODE> or <CODE>int</CODE>, copied
+     * before each invocation.
+     */
+    public abstract static class Elements extends Input {
+
+        @Param({"Integer", "int"})
+        public String elementType;
+
+        int[] ints;
+        Integer[] boxed;
+
+        @Setup(Level.Trial)
+        public void createArrays() {
+            ints = new int[size];
+            boxed = new Integer[size];
+        }
+
+        @Setup(Level.Invocation)
+        public void copyData() {
+            if (elementType.equals("int")) {
+                System.arraycopy(source, 0, ints, 0, size);
+            } else {
+                for (int i = 0; i < size; i++) {
+                    boxed[i] = source[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Input for the sequential sort.
+     */
+    @State(Scope.Thread)
+    public static class SequentialInput extends Elements {
+    }
+
+    /**
+     * Input for the parallel sorts, with a pool of <CODE>threads</CODE>
+     * workers.
+     */
+    @State(Scope.Thread)
+    public static class ParallelInput extends Elements {
+
+        @Param({"1", "2", "4", "8"})
+        public int threads;
+
+        ForkJoinPool pool;
+
+        @Setup(Level.Trial)
+        public void createPool() {
+            pool = new ForkJoinPool(threads);
+        }
+
+        @TearDown(Level.Trial)
+        public void shutdownPool() {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * <CODE>Integer</CODE> input for the parallel ping-pong sort, which has
+     * no primitive variant, with a pool of <CODE>threads</CODE> workers.
+     */
+    @State(Scope.Thread)
+    public static class BoxedParallelInput extends Input {
+
+        @Param({"1", "2", "4", "8"})
+        public int threads;
+
+        ForkJoinPool pool;
+        Integer[] boxed;
+
+        @Setup(Level.Trial)
+        public void createPool() {
+            pool = new ForkJoinPool(threads);
+            boxed = new Integer[size];
+        }
+
+        @Setup(Level.Invocation)
+        public void copyData() {
+            for (int i = 0; i < size; i++) {
+                boxed[i] = source[i];
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void shutdownPool() {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sequential merge sort.
+     */
+    @Benchmark
+    public Object mergeSorter(SequentialInput in) {
+        if (in.elementType.equals("int")) {
+            MergeSorter.sort(in.ints);
+            return in.ints;
+        }
+        MergeSorter.sort(in.boxed, COMP);
+        return in.boxed;
+    }
+
+    /**
+     * Parallel merge sort on a pool of <CODE>threads</CODE> workers.
+     */
+    @Benchmark
+    public Object parallelMergeSorter(ParallelInput in) {
+        if (in.elementType.equals("int")) {
+            ParallelMergeSorter.sort(in.ints, in.pool);
+            return in.ints;
+        }
+        ParallelMergeSorter.sort(in.boxed, COMP, in.pool);
+        return in.boxed;
+    }
+
+    /**
+     * Parallel merge sort with a single ping-pong buffer. Primitive sorts
+     * already use one scratch buffer per sort, so only <CODE>Integer</CODE>
+     * is measured.
+     */
+    @Benchmark
+    public Object parallelBufferedSort(BoxedParallelInput in) {
+        ParallelMergeSorter.bufferedSort(in.boxed, COMP, in.pool);
+        return in.boxed;
+    }
+
+    /**
+     * Parallel LSD radix sort on a pool of <CODE>threads</CODE> workers. For
+     * <CODE>Integer</CODE> the boxed values are sorted by their int value.
+     */
+    @Benchmark
+    public Object radixSorter(ParallelInput in) {
+        if (in.elementType.equals("int")) {
+            RadixSorter.sort(in.ints, in.pool);
+            return in.ints;
+        }
+        RadixSorter.sortByIntKey(in.boxed, Integer::intValue, in.pool);
+        return in.boxed;
+    }
+
+    /**
+     * Creates an array of the given length with values in the given
+     * distribution: "random", "sorted", "reversed" or "fewUnique" (random
+     * values out of 16 distinct ones).
+     *
+     * @param length the length of the array
+     * @param distribution the distribution of the values
+     * @return the new array
+     */
+    static int[] createArray(int length, String distribution) {
+        Random rand = new Random(SEED);
+        int[] a = new int[length];
+        for (int i = 0; i < length; i++) {
+            switch (distribution) {
+                case "sorted":
+                    a[i] = i;
+                    break;
+                case "reversed":
+                    a[i] = length - i;
+                    break;
+                case "fewUnique":
+                    a[i] = rand.nextInt(16);
+                    break;
+                default:
+                    a[i] = rand.nextInt(1000000);
+                    break;
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Runs all benchmarks and writes the results as JSON, by default to
+     * <CODE>sort-benchmark.json</CODE>.
+     *
+     * @param args an optional path for the JSON results
+     * @throws RunnerException if the benchmarks cannot be run
+     */
+    public static void main(String[] args) throws RunnerException {
+        String resultFile = args.length > 0 ? args[0] : "sort-benchmark.json";
+        Options opt = new OptionsBuilder()
+                .include(SortBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+        new Runner(opt).run();
+    }
+}